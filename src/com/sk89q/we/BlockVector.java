@@ -24,6 +24,11 @@ package com.sk89q.we;
  * @author sk89q
  */
 public class BlockVector extends Vector {
+    /**
+     * Block coordinates, truncated from the double components
+     */
+    protected final int blockX, blockY, blockZ;
+
     /**
      * Construct the Vector object.
      *
@@ -31,6 +36,9 @@ public class BlockVector extends Vector {
      */
     public BlockVector(Vector pt) {
         super(pt);
+        blockX = (int) x;
+        blockY = (int) y;
+        blockZ = (int) z;
     }
 
     /**
@@ -42,6 +50,9 @@ public class BlockVector extends Vector {
      */
     public BlockVector(int x, int y, int z) {
         super(x, y, z);
+        blockX = x;
+        blockY = y;
+        blockZ = z;
     }
 
     /**
@@ -54,6 +65,9 @@ public class BlockVector extends Vector {
      */
     public BlockVector(float x, float y, float z) {
         super(x, y, z);
+        blockX = (int) x;
+        blockY = (int) y;
+        blockZ = (int) z;
     }
 
     /**
@@ -66,6 +80,9 @@ public class BlockVector extends Vector {
      */
     public BlockVector(double x, double y, double z) {
         super(x, y, z);
+        blockX = (int) x;
+        blockY = (int) y;
+        blockZ = (int) z;
     }
 
     /**
@@ -76,13 +93,14 @@ public class BlockVector extends Vector {
      */
     @Override
     public boolean equals(Object obj) {
-        if (!(obj instanceof Vector)) {
+        if (obj instanceof BlockVector) {
+            BlockVector other = (BlockVector) obj;
+            return other.blockX == blockX && other.blockY == blockY && other.blockZ == blockZ;
+        } else if (!(obj instanceof Vector)) {
             return false;
         }
         Vector other = (Vector) obj;
-        return (int) other.getX() == (int) this.x && (int) other.getY() == (int) this.y
-                && (int) other.getZ() == (int) this.z;
-
+        return (int) other.x == blockX && (int) other.y == blockY && (int) other.z == blockZ;
     }
 
     /**
@@ -92,13 +110,77 @@ public class BlockVector extends Vector {
      */
     @Override
     public int hashCode() {
-        return ((int) x << 19) ^
-                ((int) y << 12) ^
-                (int) z;
+        return hash(blockX, blockY, blockZ);
+    }
+
+    /**
+     * Hash of a block position. Every bit of each coordinate affects every
+     * bit of the result, so neighbouring blocks spread over the whole table.
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return hash code
+     */
+    public static int hash(int x, int y, int z) {
+        // murmur3's 64-bit finalizer over all 96 bits of input
+        long h = (x * 0x9E3779B97F4A7C15L) ^ (y * 0xC2B2AE3D27D4EB4FL) ^ (z * 0x165667B19E3779F9L);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) h;
     }
 
     @Override
     public BlockVector toBlockVector() {
         return this;
     }
-}
\ No newline at end of file
+
+    /**
+     * Pack this position into a long.
+     *
+     * @return packed position
+     * @see #pack(int, int, int)
+     */
+    public long toLong() {
+        return pack(blockX, blockY, blockZ);
+    }
+
+    /**
+     * Unpack a position packed with {@link #pack(int, int, int)}.
+     *
+     * @param packed
+     * @return new vector
+     */
+    public static BlockVector fromLong(long packed) {
+        return new BlockVector(unpackX(packed), unpackY(packed), unpackZ(packed));
+    }
+
+    /**
+     * Pack a block position into a long, using the same layout as Minecraft:
+     * 26 bits of x, 26 bits of z, then 12 bits of y.<br>
+     * x and z must be within +/-33554432 and y within [-2048, 2047].
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return packed position
+     */
+    public static long pack(int x, int y, int z) {
+        return ((x & 0x3FFFFFFL) << 38) | ((z & 0x3FFFFFFL) << 12) | (y & 0xFFFL);
+    }
+
+    public static int unpackX(long packed) {
+        return (int) (packed >> 38);
+    }
+
+    public static int unpackY(long packed) {
+        return (int) (packed << 52 >> 52);
+    }
+
+    public static int unpackZ(long packed) {
+        return (int) (packed << 26 >> 38);
+    }
+}
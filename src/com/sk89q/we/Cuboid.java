@@ -0,0 +1,257 @@
+/*
+ * WorldEdit
+ * Copyright (C) 2010 sk89q <http://www.sk89q.com> and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.sk89q.we;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Block-aligned box, with both corners inclusive.
+ */
+public class Cuboid {
+    protected final int minX, minY, minZ, maxX, maxY, maxZ;
+
+    /**
+     * Construct the box between two corners, in any order.
+     *
+     * @param x1
+     * @param y1
+     * @param z1
+     * @param x2
+     * @param y2
+     * @param z2
+     */
+    public Cuboid(int x1, int y1, int z1, int x2, int y2, int z2) {
+        this.minX = Math.min(x1, x2);
+        this.minY = Math.min(y1, y2);
+        this.minZ = Math.min(z1, z2);
+        this.maxX = Math.max(x1, x2);
+        this.maxY = Math.max(y1, y2);
+        this.maxZ = Math.max(z1, z2);
+    }
+
+    /**
+     * Construct the box between the blocks of two points, in any order.
+     *
+     * @param pos1
+     * @param pos2
+     */
+    public Cuboid(Vector pos1, Vector pos2) {
+        this(pos1.getBlockX(), pos1.getBlockY(), pos1.getBlockZ(),
+                pos2.getBlockX(), pos2.getBlockY(), pos2.getBlockZ());
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMinZ() {
+        return minZ;
+    }
+
+    public int getMaxX() {
+        return maxX;
+    }
+
+    public int getMaxY() {
+        return maxY;
+    }
+
+    public int getMaxZ() {
+        return maxZ;
+    }
+
+    public BlockVector getMinimumPoint() {
+        return new BlockVector(minX, minY, minZ);
+    }
+
+    public BlockVector getMaximumPoint() {
+        return new BlockVector(maxX, maxY, maxZ);
+    }
+
+    /**
+     * Get the number of blocks in the box.
+     *
+     * @return volume
+     */
+    public long getVolume() {
+        return (maxX - minX + 1L) * (maxY - minY + 1L) * (maxZ - minZ + 1L);
+    }
+
+    /**
+     * Checks if a block is inside this box.
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return whether the block is inside
+     */
+    public boolean contains(int x, int y, int z) {
+        return x >= minX && x <= maxX
+                && y >= minY && y <= maxY
+                && z >= minZ && z <= maxZ;
+    }
+
+    /**
+     * Checks if a point's block is inside this box.
+     *
+     * @param pt
+     * @return whether the block is inside
+     * @see Vector#containedWithinBlock(Vector, Vector)
+     */
+    public boolean contains(Vector pt) {
+        return contains(pt.getBlockX(), pt.getBlockY(), pt.getBlockZ());
+    }
+
+    /**
+     * Checks if another box is entirely inside this one.
+     *
+     * @param other
+     * @return whether all of other is inside
+     */
+    public boolean contains(Cuboid other) {
+        return other.minX >= minX && other.maxX <= maxX
+                && other.minY >= minY && other.maxY <= maxY
+                && other.minZ >= minZ && other.maxZ <= maxZ;
+    }
+
+    /**
+     * Checks if this box shares at least one block with another.
+     *
+     * @param other
+     * @return whether they overlap
+     */
+    public boolean intersects(Cuboid other) {
+        return other.minX <= maxX && other.maxX >= minX
+                && other.minY <= maxY && other.maxY >= minY
+                && other.minZ <= maxZ && other.maxZ >= minZ;
+    }
+
+    /**
+     * Get the smallest box that contains both this and another box.
+     *
+     * @param other
+     * @return new box
+     */
+    public Cuboid union(Cuboid other) {
+        if (contains(other)) {
+            return this;
+        } else if (other.contains(this)) {
+            return other;
+        }
+        return new Cuboid(Math.min(minX, other.minX), Math.min(minY, other.minY), Math.min(minZ, other.minZ),
+                Math.max(maxX, other.maxX), Math.max(maxY, other.maxY), Math.max(maxZ, other.maxZ));
+    }
+
+    public int getMinChunkX() {
+        return minX >> 4;
+    }
+
+    public int getMinChunkZ() {
+        return minZ >> 4;
+    }
+
+    public int getMaxChunkX() {
+        return maxX >> 4;
+    }
+
+    public int getMaxChunkZ() {
+        return maxZ >> 4;
+    }
+
+    /**
+     * Iterate over the keys of every chunk this box touches, without boxing.
+     *
+     * @return chunk keys, as {@link #chunkKey(int, int)}, in x then z order
+     */
+    public PrimitiveIterator.OfLong chunks() {
+        final int cx1 = minX >> 4, cz1 = minZ >> 4, cx2 = maxX >> 4, cz2 = maxZ >> 4;
+        return new PrimitiveIterator.OfLong() {
+            int cx = cx1, cz = cz1;
+
+            @Override
+            public boolean hasNext() {
+                return cx <= cx2;
+            }
+
+            @Override
+            public long nextLong() {
+                if (cx > cx2) {
+                    throw new NoSuchElementException();
+                }
+                final long key = chunkKey(cx, cz);
+                if (cz == cz2) {
+                    cz = cz1;
+                    ++cx;
+                } else {
+                    ++cz;
+                }
+                return key;
+            }
+        };
+    }
+
+    /**
+     * Pack chunk coordinates into a long.
+     *
+     * @param chunkX
+     * @param chunkZ
+     * @return key
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public static int chunkX(long chunkKey) {
+        return (int) (chunkKey >> 32);
+    }
+
+    public static int chunkZ(long chunkKey) {
+        return (int) chunkKey;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Cuboid)) {
+            return false;
+        }
+        Cuboid other = (Cuboid) obj;
+        return other.minX == minX && other.minY == minY && other.minZ == minZ
+                && other.maxX == maxX && other.maxY == maxY && other.maxZ == maxZ;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * BlockVector.hash(minX, minY, minZ) + BlockVector.hash(maxX, maxY, maxZ);
+    }
+
+    /**
+     * Returns string representation "(x, y, z) - (x, y, z)".
+     *
+     * @return string
+     */
+    @Override
+    public String toString() {
+        return "(" + minX + ", " + minY + ", " + minZ + ") - (" + maxX + ", " + maxY + ", " + maxZ + ")";
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * WorldEdit
+ * Copyright (C) 2010 sk89q <http://www.sk89q.com> and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.sk89q.we;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+
+/**
+ * Boxes in one world, bucketed by the chunks they touch, so that a query only
+ * has to look at the boxes that share a chunk with it.<br>
+ * Not thread safe.
+ *
+ * @param <T> value stored with each box
+ */
+public class CuboidIndex<T> {
+    protected final HashMap<Long, List<Entry<T>>> cells = new HashMap<Long, List<Entry<T>>>();
+    protected int size = 0;
+    // bumped by each query, so entries seen in an earlier chunk are skipped
+    private int stamp = 0;
+
+    /**
+     * Add a box.
+     *
+     * @param bounds
+     * @param value
+     */
+    public void add(Cuboid bounds, T value) {
+        final Entry<T> e = new Entry<T>(bounds, value);
+        for (PrimitiveIterator.OfLong it = bounds.chunks(); it.hasNext();) {
+            final Long key = it.nextLong();
+            List<Entry<T>> cell = cells.get(key);
+            if (cell == null) {
+                cells.put(key, cell = new ArrayList<Entry<T>>(2));
+            }
+            cell.add(e);
+        }
+        ++size;
+    }
+
+    /**
+     * Remove a box that was added with the same bounds and value.
+     *
+     * @param bounds
+     * @param value
+     * @return whether it was found
+     */
+    public boolean remove(Cuboid bounds, T value) {
+        boolean found = false;
+        for (PrimitiveIterator.OfLong it = bounds.chunks(); it.hasNext();) {
+            final Long key = it.nextLong();
+            final List<Entry<T>> cell = cells.get(key);
+            if (cell != null) {
+                for (int i = 0; i < cell.size(); ++i) {
+                    final Entry<T> e = cell.get(i);
+                    if (e.value == value && e.bounds.equals(bounds)) {
+                        cell.remove(i);
+                        found = true;
+                        break;
+                    }
+                }
+                if (cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+        if (found) {
+            --size;
+        }
+        return found;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        cells.clear();
+        size = 0;
+    }
+
+    /**
+     * Find the values whose box contains a block.
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @param out receives the matches
+     * @return out
+     */
+    public <C extends Collection<? super T>> C getAt(int x, int y, int z, C out) {
+        final List<Entry<T>> cell = cells.get(Cuboid.chunkKey(x >> 4, z >> 4));
+        if (cell != null) {
+            for (Entry<T> e : cell) {
+                // only one chunk, so no duplicates
+                if (e.bounds.contains(x, y, z)) {
+                    out.add(e.value);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Find the values whose box overlaps a region.
+     *
+     * @param region
+     * @param out receives the matches
+     * @return out
+     */
+    public <C extends Collection<? super T>> C getIntersecting(Cuboid region, C out) {
+        return query(region, false, out);
+    }
+
+    /**
+     * Find the values whose box is entirely within a region.
+     *
+     * @param region
+     * @param out receives the matches
+     * @return out
+     */
+    public <C extends Collection<? super T>> C getContained(Cuboid region, C out) {
+        return query(region, true, out);
+    }
+
+    /**
+     * Checks if any box overlaps a region.
+     *
+     * @param region
+     * @return whether anything overlaps
+     */
+    public boolean intersects(Cuboid region) {
+        return search(region, false, null);
+    }
+
+    protected <C extends Collection<? super T>> C query(Cuboid region, boolean contained, C out) {
+        search(region, contained, out);
+        return out;
+    }
+
+    /**
+     * Check each box that shares a chunk with a region, once.
+     *
+     * @param region
+     * @param contained match boxes entirely within the region, not just overlapping it
+     * @param out receives the matches, or null to stop at the first
+     * @return whether anything matched
+     */
+    private boolean search(Cuboid region, boolean contained, Collection<? super T> out) {
+        final int mark = ++stamp;
+        boolean found = false;
+        final long regionChunks = (region.getMaxChunkX() - (long) region.getMinChunkX() + 1)
+                * (region.getMaxChunkZ() - (long) region.getMinChunkZ() + 1);
+        if (regionChunks > cells.size()) {
+            // huge selection: cheaper to walk what is stored than every chunk selected
+            for (Map.Entry<Long, List<Entry<T>>> c : cells.entrySet()) {
+                final long key = c.getKey();
+                final int cx = Cuboid.chunkX(key), cz = Cuboid.chunkZ(key);
+                if (cx >= region.getMinChunkX() && cx <= region.getMaxChunkX()
+                        && cz >= region.getMinChunkZ() && cz <= region.getMaxChunkZ()
+                        && collect(c.getValue(), region, contained, mark, out)) {
+                    if (out == null) {
+                        return true;
+                    }
+                    found = true;
+                }
+            }
+        } else {
+            for (PrimitiveIterator.OfLong it = region.chunks(); it.hasNext();) {
+                final List<Entry<T>> cell = cells.get(it.nextLong());
+                if (cell != null && collect(cell, region, contained, mark, out)) {
+                    if (out == null) {
+                        return true;
+                    }
+                    found = true;
+                }
+            }
+        }
+        return found;
+    }
+
+    private boolean collect(List<Entry<T>> cell, Cuboid region, boolean contained, int mark, Collection<? super T> out) {
+        boolean found = false;
+        for (Entry<T> e : cell) {
+            if (e.stamp != mark) {
+                e.stamp = mark;
+                if (contained ? region.contains(e.bounds) : region.intersects(e.bounds)) {
+                    if (out == null) {
+                        return true;
+                    }
+                    out.add(e.value);
+                    found = true;
+                }
+            }
+        }
+        return found;
+    }
+
+    protected static final class Entry<T> {
+
+        final Cuboid bounds;
+        final T value;
+        int stamp;
+
+        Entry(Cuboid bounds, T value) {
+            this.bounds = bounds;
+            this.value = value;
+        }
+    }
+}
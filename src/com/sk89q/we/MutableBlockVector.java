@@ -0,0 +1,231 @@
+/*
+ * WorldEdit
+ * Copyright (C) 2010 sk89q <http://www.sk89q.com> and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.sk89q.we;
+
+/**
+ * Integer block position that can be changed in place, for loops that would
+ * otherwise create a new BlockVector for every step.<br>
+ * Do not change one while it is being used as a map key.
+ */
+public class MutableBlockVector {
+    protected int x, y, z;
+
+    /**
+     * Construct the position (0, 0, 0).
+     */
+    public MutableBlockVector() {
+    }
+
+    /**
+     * Construct the position.
+     *
+     * @param x
+     * @param y
+     * @param z
+     */
+    public MutableBlockVector(int x, int y, int z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * Construct the position from a vector, truncating the same way
+     * BlockVector does.
+     *
+     * @param pt
+     */
+    public MutableBlockVector(Vector pt) {
+        set(pt);
+    }
+
+    public int getBlockX() {
+        return x;
+    }
+
+    public int getBlockY() {
+        return y;
+    }
+
+    public int getBlockZ() {
+        return z;
+    }
+
+    /**
+     * Set all components.
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return this
+     */
+    public MutableBlockVector set(int x, int y, int z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Copy a vector's block position.
+     *
+     * @param pt
+     * @return this
+     */
+    public MutableBlockVector set(Vector pt) {
+        this.x = (int) pt.x;
+        this.y = (int) pt.y;
+        this.z = (int) pt.z;
+        return this;
+    }
+
+    public MutableBlockVector set(MutableBlockVector pt) {
+        return set(pt.x, pt.y, pt.z);
+    }
+
+    /**
+     * Set from a position packed with {@link BlockVector#pack(int, int, int)}.
+     *
+     * @param packed
+     * @return this
+     */
+    public MutableBlockVector set(long packed) {
+        return set(BlockVector.unpackX(packed), BlockVector.unpackY(packed), BlockVector.unpackZ(packed));
+    }
+
+    public MutableBlockVector setX(int x) {
+        this.x = x;
+        return this;
+    }
+
+    public MutableBlockVector setY(int y) {
+        this.y = y;
+        return this;
+    }
+
+    public MutableBlockVector setZ(int z) {
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Move this position.
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return this
+     */
+    public MutableBlockVector add(int x, int y, int z) {
+        this.x += x;
+        this.y += y;
+        this.z += z;
+        return this;
+    }
+
+    public MutableBlockVector add(MutableBlockVector other) {
+        return add(other.x, other.y, other.z);
+    }
+
+    /**
+     * Move this position.
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return this
+     */
+    public MutableBlockVector subtract(int x, int y, int z) {
+        this.x -= x;
+        this.y -= y;
+        this.z -= z;
+        return this;
+    }
+
+    public MutableBlockVector subtract(MutableBlockVector other) {
+        return subtract(other.x, other.y, other.z);
+    }
+
+    /**
+     * Scale this position.
+     *
+     * @param n
+     * @return this
+     */
+    public MutableBlockVector multiply(int n) {
+        this.x *= n;
+        this.y *= n;
+        this.z *= n;
+        return this;
+    }
+
+    /**
+     * Checks if this is the same block as a vector, compared the same way
+     * BlockVector compares them.
+     *
+     * @param pt
+     * @return whether they are the same block
+     */
+    public boolean matches(Vector pt) {
+        return (int) pt.x == x && (int) pt.y == y && (int) pt.z == z;
+    }
+
+    /**
+     * Pack this position into a long.
+     *
+     * @return packed position
+     * @see BlockVector#pack(int, int, int)
+     */
+    public long toLong() {
+        return BlockVector.pack(x, y, z);
+    }
+
+    /**
+     * Gets an immutable copy.
+     *
+     * @return BlockVector
+     */
+    public BlockVector toBlockVector() {
+        return new BlockVector(x, y, z);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof MutableBlockVector)) {
+            return false;
+        }
+        MutableBlockVector other = (MutableBlockVector) obj;
+        return other.x == x && other.y == y && other.z == z;
+    }
+
+    @Override
+    public int hashCode() {
+        return BlockVector.hash(x, y, z);
+    }
+
+    /**
+     * Returns string representation "(x, y, z)".
+     *
+     * @return string
+     */
+    @Override
+    public String toString() {
+        return "(" + x + ", " + y + ", " + z + ")";
+    }
+}
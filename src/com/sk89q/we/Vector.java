@@ -24,6 +24,9 @@ package com.sk89q.we;
  */
 public class Vector implements Comparable<Vector> {
     protected final double x, y, z;
+    // 16.16 fixed point, for integer transforms
+    private static final int FIXED_BITS = 16;
+    private static final long FIXED_ONE = 1L << FIXED_BITS, FIXED_HALF = FIXED_ONE >> 1;
 
     /**
      * Construct the Vector object.
@@ -534,6 +537,16 @@ public class Vector implements Comparable<Vector> {
                 && getBlockZ() >= min.getBlockZ() && getBlockZ() <= max.getBlockZ();
     }
 
+    /**
+     * Checks to see if this vector's block is within a box.
+     *
+     * @param region
+     * @return
+     */
+    public boolean containedWithinBlock(Cuboid region) {
+        return region.contains(this);
+    }
+
     /**
      * Clamp the Y component.
      *
@@ -596,10 +609,11 @@ public class Vector implements Comparable<Vector> {
     public Vector transform2D(double angle,
             double aboutX, double aboutZ, double translateX, double translateZ) {
         angle = Math.toRadians(angle);
+        final double cos = Math.cos(angle), sin = Math.sin(angle);
         double x = this.x - aboutX;
         double z = this.z - aboutZ;
-        double x2 = x * Math.cos(angle) - z * Math.sin(angle);
-        double z2 = x * Math.sin(angle) + z * Math.cos(angle);
+        double x2 = x * cos - z * sin;
+        double z2 = x * sin + z * cos;
 
         return new Vector(
             x2 + aboutX + translateX,
@@ -608,6 +622,93 @@ public class Vector implements Comparable<Vector> {
         );
     }
 
+    /**
+     * 2D transformation of many points at once.<br>
+     * The rotation is computed once for the whole batch, and the output
+     * arrays may be the same as the input arrays.
+     *
+     * @param xs x coordinates
+     * @param zs z coordinates
+     * @param outX receives the new x coordinates
+     * @param outZ receives the new z coordinates
+     * @param angle in degrees
+     * @param aboutX about which x coordinate to rotate
+     * @param aboutZ about which z coordinate to rotate
+     * @param translateX what to add after rotation
+     * @param translateZ what to add after rotation
+     */
+    public static void transform2D(double[] xs, double[] zs, double[] outX, double[] outZ,
+            double angle, double aboutX, double aboutZ, double translateX, double translateZ) {
+        transform2D(xs, zs, 0, outX, outZ, 0, xs.length, angle, aboutX, aboutZ, translateX, translateZ);
+    }
+
+    /**
+     * 2D transformation of <code>len</code> points, from <code>off</code> in
+     * the inputs to <code>outOff</code> in the outputs.
+     *
+     * @see #transform2D(double[], double[], double[], double[], double, double, double, double, double)
+     */
+    public static void transform2D(double[] xs, double[] zs, int off, double[] outX, double[] outZ, int outOff, int len,
+            double angle, double aboutX, double aboutZ, double translateX, double translateZ) {
+        checkRange(xs.length, off, len);
+        checkRange(zs.length, off, len);
+        checkRange(outX.length, outOff, len);
+        checkRange(outZ.length, outOff, len);
+        angle = Math.toRadians(angle);
+        final double cos = Math.cos(angle), sin = Math.sin(angle);
+        final double dx = aboutX + translateX, dz = aboutZ + translateZ;
+        for (int i = 0; i < len; ++i) {
+            // both read before either is written, for in-place use
+            final double x = xs[off + i] - aboutX;
+            final double z = zs[off + i] - aboutZ;
+            outX[outOff + i] = x * cos - z * sin + dx;
+            outZ[outOff + i] = x * sin + z * cos + dz;
+        }
+    }
+
+    /**
+     * 2D transformation of block coordinates, in 16.16 fixed point.<br>
+     * Results are rounded to the nearest block, and quarter turns are exact.
+     * The output arrays may be the same as the input arrays.
+     *
+     * @param xs x coordinates
+     * @param zs z coordinates
+     * @param outX receives the new x coordinates
+     * @param outZ receives the new z coordinates
+     * @param angle in degrees
+     * @param aboutX about which x coordinate to rotate
+     * @param aboutZ about which z coordinate to rotate
+     * @param translateX what to add after rotation
+     * @param translateZ what to add after rotation
+     */
+    public static void transform2D(int[] xs, int[] zs, int[] outX, int[] outZ,
+            double angle, int aboutX, int aboutZ, int translateX, int translateZ) {
+        transform2D(xs, zs, 0, outX, outZ, 0, xs.length, angle, aboutX, aboutZ, translateX, translateZ);
+    }
+
+    public static void transform2D(int[] xs, int[] zs, int off, int[] outX, int[] outZ, int outOff, int len,
+            double angle, int aboutX, int aboutZ, int translateX, int translateZ) {
+        checkRange(xs.length, off, len);
+        checkRange(zs.length, off, len);
+        checkRange(outX.length, outOff, len);
+        checkRange(outZ.length, outOff, len);
+        angle = Math.toRadians(angle);
+        final long cos = Math.round(Math.cos(angle) * FIXED_ONE), sin = Math.round(Math.sin(angle) * FIXED_ONE);
+        final int dx = aboutX + translateX, dz = aboutZ + translateZ;
+        for (int i = 0; i < len; ++i) {
+            final long x = xs[off + i] - aboutX;
+            final long z = zs[off + i] - aboutZ;
+            outX[outOff + i] = (int) ((x * cos - z * sin + FIXED_HALF) >> FIXED_BITS) + dx;
+            outZ[outOff + i] = (int) ((x * sin + z * cos + FIXED_HALF) >> FIXED_BITS) + dz;
+        }
+    }
+
+    private static void checkRange(int length, int off, int len) {
+        if (off < 0 || len < 0 || off > length - len) {
+            throw new ArrayIndexOutOfBoundsException("range [" + off + ", " + off + " + " + len + ") out of bounds for length " + length);
+        }
+    }
+
     public boolean isCollinearWith(Vector other) {
         if (x == 0 && y == 0 && z == 0) {
             // this is a zero vector
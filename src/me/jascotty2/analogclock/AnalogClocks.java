@@ -17,8 +17,9 @@
  */
 package me.jascotty2.analogclock;
 
-// using a local copy of world edit's BlockVector, so the plugin still functions in case WE is removed from the server
-import com.sk89q.we.BlockVector;
+// using a local copy of world edit's vector types, so the plugin still functions in case WE is removed from the server
+import com.sk89q.we.Cuboid;
+import com.sk89q.we.CuboidIndex;
 import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldedit.bukkit.WorldEditPlugin;
 import com.sk89q.worldedit.world.block.BlockType;
@@ -26,15 +27,21 @@ import com.sk89q.worldedit.world.block.BlockTypes;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
+import me.jascotty2.libv3.util.BKTree;
+import me.jascotty2.libv3_2.io.FileAppender;
 import me.jascotty2.libv3_2.io.NBT;
 import me.jascotty2.libv3_2.io.NBTMap;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.Server;
+import org.bukkit.World;
 import org.bukkit.block.BlockFace;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -45,14 +52,35 @@ import org.bukkit.plugin.java.JavaPlugin;
 public class AnalogClocks extends JavaPlugin implements Runnable {
 
 	File dataFile;
+	/**
+	 * record of clocks created and removed, or null if it could not be opened
+	 */
+	FileAppender auditLog = null;
 	String prefix = ChatColor.GOLD.toString() + "[" + ChatColor.DARK_AQUA + "AnalogClocks" + ChatColor.GOLD + "] ";
 	HashMap<String, Clock> clocks = new HashMap();
+	/**
+	 * clock bounds by world name, kept in step with clocks
+	 */
+	final HashMap<String, CuboidIndex<Clock>> clockIndex = new HashMap<String, CuboidIndex<Clock>>();
+	/**
+	 * clock names for suggestions, built when first needed after a change
+	 */
+	BKTree clockNames = null;
+	/**
+	 * block names for suggestions, built when first needed
+	 */
+	static BKTree materialNames = null;
 	boolean dirty = false;
 	int taskID = -1;
 	public WorldEditPlugin worldEdit = null;
 	final static int MIN_CLOCK_SIZE = 5;
 	final static int MAX_CLOCK_SIZE = 150;
 	final static Material DEFAULT_HAND_MATERIAL = Material.BLACK_WOOL;
+	/**
+	 * clock counts at or above this are decoded in parallel, and the load time
+	 * is logged
+	 */
+	final static int PARALLEL_LOAD_MIN = 256;
 	protected static AnalogClocks plugin = null;
 
 	@Override
@@ -71,13 +99,43 @@ public class AnalogClocks extends JavaPlugin implements Runnable {
 		}
 
 		dataFile = new File(getDataFolder(), "data.nbt");
+		try {
+			auditLog = new FileAppender(new File(getDataFolder(), "audit.log"));
+		} catch (IOException ex) {
+			getLogger().log(Level.WARNING, "Failed to open the audit log", ex);
+		}
 
 		if (dataFile.exists()) {
 			try {
+				final long start = System.nanoTime();
 				NBTMap dat = NBT.load(dataFile);
+				final long read = System.nanoTime();
+				final String[] keys = dat.keySet().toArray(new String[0]);
+				final Clock[] loaded = new Clock[keys.length];
+				final Clock.Loader loader = new Clock.Loader(dat, keys, loaded, 0, keys.length);
+				if (keys.length >= PARALLEL_LOAD_MIN) {
+					ForkJoinPool.commonPool().invoke(loader);
+				} else {
+					loader.compute();
+				}
+				// only the world lookup needs the main thread
 				final Server s = getServer();
-				for (String k : dat.keySet()) {
-					clocks.put(k.toLowerCase(), Clock.fromNBT(dat.getNBTMap(k), s));
+				final HashMap<String, World> worlds = new HashMap<String, World>();
+				for (int i = 0; i < keys.length; ++i) {
+					final Clock c = loaded[i];
+					if (c != null) {
+						if (!worlds.containsKey(c.worldName)) {
+							worlds.put(c.worldName, s.getWorld(c.worldName));
+						}
+						c.world = worlds.get(c.worldName);
+						indexClock(c);
+					}
+					clocks.put(keys[i].toLowerCase(), c);
+				}
+				if (keys.length >= PARALLEL_LOAD_MIN) {
+					final long done = System.nanoTime();
+					getLogger().log(Level.INFO, String.format("Loaded %d clocks in %d ms (%d ms reading, %d ms decoding)",
+							keys.length, (done - start) / 1000000, (read - start) / 1000000, (done - read) / 1000000));
 				}
 			} catch (IOException ex) {
 				getLogger().log(Level.SEVERE, "Failed to load clocks", ex);
@@ -101,6 +159,28 @@ public class AnalogClocks extends JavaPlugin implements Runnable {
 				c.clear();
 			}
 		}
+		if (auditLog != null) {
+			try {
+				auditLog.close();
+			} catch (IOException ex) {
+				getLogger().log(Level.WARNING, "Failed to write the audit log", ex);
+			}
+			auditLog = null;
+		}
+	}
+
+	/**
+	 * Add a line to the audit log: time, action, clock, who, world and bounds
+	 */
+	void audit(CommandSender who, String action, Clock c) {
+		if (auditLog != null) {
+			try {
+				auditLog.appendLine(String.format("%tF %<tT\t%s\t%s\t%s\t%s\t%s",
+						System.currentTimeMillis(), action, c.name, who.getName(), c.worldName, c.getBounds()));
+			} catch (IOException ex) {
+				getLogger().log(Level.WARNING, "Failed to write to the audit log", ex);
+			}
+		}
 	}
 
 	@Override
@@ -154,6 +234,8 @@ public class AnalogClocks extends JavaPlugin implements Runnable {
 				}
 			} else if (args[0].equalsIgnoreCase("list")) {
 				listClocks(sender);
+			} else if (args[0].equalsIgnoreCase("repair") && args.length == 2) {
+				repairClock(sender, args[1]);
 			}
 		} else {
 			return false;
@@ -169,15 +251,110 @@ public class AnalogClocks extends JavaPlugin implements Runnable {
 		}
 	}
 
+	void indexClock(Clock c) {
+		clockNames = null;
+		final Cuboid bounds = c.getBounds();
+		if (bounds != null) {
+			CuboidIndex<Clock> index = clockIndex.get(c.worldName);
+			if (index == null) {
+				clockIndex.put(c.worldName, index = new CuboidIndex<Clock>());
+			}
+			index.add(bounds, c);
+		}
+	}
+
+	void unindexClock(Clock c) {
+		clockNames = null;
+		final Cuboid bounds = c.getBounds();
+		final CuboidIndex<Clock> index = clockIndex.get(c.worldName);
+		if (bounds != null && index != null) {
+			index.remove(bounds, c);
+			if (index.isEmpty()) {
+				clockIndex.remove(c.worldName);
+			}
+		}
+	}
+
+	/**
+	 * @return the nearest clock name, or null if none are close
+	 */
+	String suggestClock(String name) {
+		if (clockNames == null) {
+			clockNames = new BKTree(clocks.keySet());
+		}
+		name = name.toLowerCase();
+		final String key = clockNames.findClosest(name, suggestDistance(name));
+		final Clock c = key == null ? null : clocks.get(key);
+		// as it was typed when created
+		return c == null ? key : c.name;
+	}
+
+	/**
+	 * @return the nearest block name, or null if none are close
+	 */
+	static String suggestMaterial(String name) {
+		if (materialNames == null) {
+			final ArrayList<String> names = new ArrayList<String>();
+			for (Material m : Material.values()) {
+				if (m.isBlock() && !m.isLegacy()) {
+					names.add(m.name().toLowerCase());
+				}
+			}
+			materialNames = new BKTree(names);
+		}
+		name = name.toLowerCase();
+		if (name.startsWith("minecraft:")) {
+			name = name.substring(10);
+		}
+		return materialNames.findClosest(name, suggestDistance(name));
+	}
+
+	/**
+	 * about one typo in every four letters, up to three
+	 */
+	static int suggestDistance(String name) {
+		return Math.max(1, Math.min(3, name.length() / 4));
+	}
+
+	String didYouMean(String suggestion) {
+		return suggestion == null ? "" : ChatColor.RED + " - did you mean " + ChatColor.DARK_AQUA + suggestion + ChatColor.RED + "?";
+	}
+
+	/**
+	 * @return clocks in this world that overlap the region
+	 */
+	List<Clock> getClocks(String worldName, Cuboid region) {
+		final CuboidIndex<Clock> index = clockIndex.get(worldName);
+		return index == null ? new ArrayList<Clock>(0) : index.getIntersecting(region, new ArrayList<Clock>());
+	}
+
+	void repairClock(CommandSender p, String clock) {
+		Clock c = clocks.get(clock.toLowerCase());
+		if (c == null) {
+			p.sendMessage(prefix + ChatColor.RED + "Clock not found" + didYouMean(suggestClock(clock)));
+		} else if (c.world == null) {
+			p.sendMessage(prefix + ChatColor.RED + "The world for this clock is not loaded");
+		} else {
+			c.drawFace();
+			// redraw the hands as well
+			c.displayTime = -1;
+			c.update();
+			p.sendMessage(prefix + ChatColor.GREEN + "Clock repaired!");
+		}
+	}
+
 	void removeClock(CommandSender p, String clock) {
 		Clock c = clocks.remove(clock.toLowerCase());
 		if (c != null) {
+			unindexClock(c);
 			c.clear();
+			c.clearFace();
+			audit(p, "delete", c);
 			p.sendMessage(prefix + ChatColor.GREEN + "Clock removed!");
 			dirty = true;
 			save();
 		} else {
-			p.sendMessage(prefix + ChatColor.RED + "Clock not found");
+			p.sendMessage(prefix + ChatColor.RED + "Clock not found" + didYouMean(suggestClock(clock)));
 		}
 	}
 
@@ -207,30 +384,22 @@ public class AnalogClocks extends JavaPlugin implements Runnable {
 				return;
 			}
 
+			final Cuboid region = new Cuboid(min.getBlockX(), min.getBlockY(), min.getBlockZ(),
+					max.getBlockX(), max.getBlockY(), max.getBlockZ());
 			int removed = 0;
-			for (Map.Entry<String, Clock> e : clocks.entrySet().toArray(new Map.Entry[0])) {
-				final BlockVector l1 = e.getValue().bSEU, l2 = e.getValue().bNWD;
-				if (l1 != null && l2 != null) {
-					final int x1 = l1.getBlockX();
-					final int y1 = l1.getBlockY();
-					final int z1 = l1.getBlockZ();
-					final int x2 = l2.getBlockX();
-					final int y2 = l2.getBlockY();
-					final int z2 = l2.getBlockZ();
-
-					if ((x1 >= min.getBlockX() && x1 <= max.getBlockX()
-							&& y1 >= min.getBlockY() && y1 <= max.getBlockY()
-							&& z1 >= min.getBlockZ() && z1 <= max.getBlockZ())
-							|| (x2 >= min.getBlockX() && x2 <= max.getBlockX()
-							&& y2 >= min.getBlockY() && y2 <= max.getBlockY()
-							&& z2 >= min.getBlockZ() && z2 <= max.getBlockZ())) {
-						// one of these points are contained in this region
-						final String n = e.getValue().name;
-						clocks.remove(e.getKey());
-						p.sendMessage(prefix + ChatColor.GREEN + "Clock " + ChatColor.DARK_AQUA + n + ChatColor.GREEN + " Removed");
-						++removed;
-					}
+			// any overlap counts, not just a corner inside the selection
+			for (Clock c : getClocks(p.getWorld().getName(), region)) {
+				clocks.remove(c.name.toLowerCase());
+				unindexClock(c);
+				if (c.world == null) {
+					// its world was loaded after this plugin was enabled
+					c.world = p.getWorld();
 				}
+				c.clear();
+				c.clearFace();
+				audit(p, "delete", c);
+				p.sendMessage(prefix + ChatColor.GREEN + "Clock " + ChatColor.DARK_AQUA + c.name + ChatColor.GREEN + " Removed");
+				++removed;
 			}
 			if (removed == 0) {
 				p.sendMessage(prefix + ChatColor.RED + "No clocks are contained within this selection");
@@ -364,15 +533,15 @@ public class AnalogClocks extends JavaPlugin implements Runnable {
 
 			if (ok) {
 				// let's set up this clock, then!
-				// /analogclock create <name> [hour-block] [minute-block] [center-block] [hours-only]
-				Material mMin, mHour, mCenter;
+				// /analogclock create <name> [hour-block] [minute-block] [center-block] [hours-only] [face-block]
+				Material mMin, mHour, mCenter, mFace = null;
 				boolean minuteClock = true;
 
 				if (args.length >= 3) {
 					// todo? :data
 					BlockType t = BlockTypes.get(args[2]);
 					if (t == null) {
-						p.sendMessage(prefix + ChatColor.RED + "Unknown material type: " + args[2]);
+						p.sendMessage(prefix + ChatColor.RED + "Unknown material type: " + args[2] + didYouMean(suggestMaterial(args[2])));
 						return;
 					} else {
 						mHour = BukkitAdapter.adapt(t);
@@ -384,7 +553,7 @@ public class AnalogClocks extends JavaPlugin implements Runnable {
 				if (args.length >= 4) {
 					BlockType t = BlockTypes.get(args[3]);
 					if (t == null) {
-						p.sendMessage(prefix + ChatColor.RED + "Unknown material type: " + args[3]);
+						p.sendMessage(prefix + ChatColor.RED + "Unknown material type: " + args[3] + didYouMean(suggestMaterial(args[3])));
 						return;
 					} else {
 						mMin = BukkitAdapter.adapt(t);
@@ -396,7 +565,7 @@ public class AnalogClocks extends JavaPlugin implements Runnable {
 				if (args.length >= 5) {
 					BlockType t = BlockTypes.get(args[4]);
 					if (t == null) {
-						p.sendMessage(prefix + ChatColor.RED + "Unknown material type: " + args[4]);
+						p.sendMessage(prefix + ChatColor.RED + "Unknown material type: " + args[4] + didYouMean(suggestMaterial(args[4])));
 						return;
 					} else {
 						mCenter = BukkitAdapter.adapt(t);
@@ -409,12 +578,32 @@ public class AnalogClocks extends JavaPlugin implements Runnable {
 					minuteClock = !(args[5].equalsIgnoreCase("true") || args[5].equalsIgnoreCase("t") || args[5].equals("1"));
 				}
 
+				if (args.length >= 7) {
+					BlockType t = BlockTypes.get(args[6]);
+					if (t == null) {
+						p.sendMessage(prefix + ChatColor.RED + "Unknown material type: " + args[6] + didYouMean(suggestMaterial(args[6])));
+						return;
+					} else {
+						mFace = BukkitAdapter.adapt(t);
+					}
+				}
+
 				Clock c = new Clock(args[1], getServer(), p.getWorld(), minuteClock, min, max, clockFace, mMin, mHour, mCenter);
 				c.clockFace_FlatBase = clockFace2;
+				c.mFace = mFace;
+
+				final List<Clock> overlap = getClocks(c.worldName, c.getBounds());
+				if (!overlap.isEmpty()) {
+					p.sendMessage(prefix + ChatColor.RED + "Selection overlaps the clock " + ChatColor.DARK_AQUA + overlap.get(0).name);
+					return;
+				}
 
 				clocks.put(clockName, c);
+				indexClock(c);
+				audit(p, "create", c);
 				dirty = true;
 				save();
+				c.drawFace();
 				c.update();
 				p.sendMessage(prefix + ChatColor.GREEN + "Clock created!");
 			}
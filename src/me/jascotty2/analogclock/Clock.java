@@ -19,8 +19,11 @@ package me.jascotty2.analogclock;
 
 // using a local copy of world edit's BlockVector, so the plugin still functions in case WE is removed from the server
 import com.sk89q.we.BlockVector;
+import com.sk89q.we.Cuboid;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.RecursiveAction;
 import me.jascotty2.libv3.util.FastMath;
 import me.jascotty2.libv3_2.io.NBT;
 import me.jascotty2.libv3_2.io.NBTList;
@@ -41,6 +44,7 @@ public class Clock implements NBT.Compound {
 	int displayTime = -1; // value between 0 and 24000
 	//Location locSEU, locNWD; 
 	BlockVector bSEU, bNWD; // U = +, D = -
+	Cuboid bounds;
 	/**
 	 * Which direction the clock is facing
 	 */
@@ -48,9 +52,17 @@ public class Clock implements NBT.Compound {
 	String worldName;
 	World world;
 	Material mMin, mHour, mCenter;
+	/**
+	 * rim and hour marks, or null for no face
+	 */
+	Material mFace;
 	// values stored locally (not saved)
 	int cx = Integer.MAX_VALUE, cy = Integer.MAX_VALUE, cz = Integer.MAX_VALUE, cr = 3;
 	boolean deepClock = false;
+	/**
+	 * sin, cos out-parameter for drawHand: drawing is main-thread only
+	 */
+	private final double[] sincos = new double[2];
 
 	public Clock(String name, Server s, boolean minutes) {
 		this.name = name;
@@ -76,6 +88,16 @@ public class Clock implements NBT.Compound {
 		this.mCenter = mCenter;
 	}
 
+	/**
+	 * @return the box between the two corners, or null if either is missing
+	 */
+	Cuboid getBounds() {
+		if (bounds == null && bSEU != null && bNWD != null) {
+			bounds = new Cuboid(bNWD, bSEU);
+		}
+		return bounds;
+	}
+
 	void update() {
 		if (world != null && bSEU != null && bNWD != null
 				&& (world.isChunkLoaded(bSEU.getBlockX() >> 4, bSEU.getBlockZ() >> 4)
@@ -154,7 +176,7 @@ public class Clock implements NBT.Compound {
 		drawHand(minute, cr, true, time);
 
 		// center piece is always one pixel
-		// (may update in the future for larger clocks)
+		// (larger hubs are part of the face)
 		Block b = world.getBlockAt(cx, cy, cz);
 		b.setType(mCenter);
 		b.setMetadata("AnalogClock", new FixedMetadataValue(AnalogClocks.plugin, time));
@@ -167,8 +189,8 @@ public class Clock implements NBT.Compound {
 	}
 
 	void drawHand(double angle, double length, boolean front, int time) {
-		double ax = FastMath.sin(angle);
-		double ay = FastMath.cos(angle);
+		FastMath.sincos(angle, sincos);
+		final double ax = sincos[0], ay = sincos[1];
 		double len = length + .6;//Math.sqrt(length * 2);
 		int lastx = Integer.MIN_VALUE, lasty = Integer.MIN_VALUE;
 		for (double i = .5; i <= len; ++i) {
@@ -183,6 +205,28 @@ public class Clock implements NBT.Compound {
 	}
 
 	void setBlock(int xn, int yn, boolean front, int time) {
+		Block b = getBlock(xn, yn);
+		if (b != null && b.getType() == Material.AIR) {
+			if (front) {
+				if (deepClock) {
+					b = b.getRelative(clockFace);
+				}
+				b.setType(mMin);
+			} else {
+				b.setType(mHour);
+			}
+			b.setMetadata("AnalogClock", new FixedMetadataValue(AnalogClocks.plugin, time));
+		}
+	}
+
+	/**
+	 * Map a point on the face to the block at the back of the clock
+	 *
+	 * @param xn face x, +x is 3 o'clock
+	 * @param yn face y, +y is 12 o'clock
+	 * @return the block, or null if the clock's facing is not set up
+	 */
+	Block getBlock(int xn, int yn) {
 		Block b = null;
 		switch (clockFace) {
 			case NORTH: // -z
@@ -230,16 +274,66 @@ public class Clock implements NBT.Compound {
 				}
 				break;
 		}
-		if (b != null && b.getType() == Material.AIR) {
-			if (front) {
-				if (deepClock) {
-					b = b.getRelative(clockFace);
-				}
-				b.setType(mMin);
-			} else {
-				b.setType(mHour);
+		return b;
+	}
+
+	/**
+	 * Draw the rim, hour marks and hub. <br />
+	 * These never change, so are only drawn when the clock is created or
+	 * repaired, and carry no metadata so that clearOldBlocks leaves them.
+	 */
+	void drawFace() {
+		if (cx == Integer.MAX_VALUE) {
+			calcCenter();
+		}
+		if (cx == Integer.MAX_VALUE || cy == Integer.MAX_VALUE || cz == Integer.MAX_VALUE || world == null) {
+			return;
+		}
+		final ClockFace f = ClockFace.forRadius(cr);
+		if (mFace != null) {
+			drawFace(f.faceX, f.faceY, mFace);
+		}
+		if (mCenter != null) {
+			drawFace(f.hubX, f.hubY, mCenter);
+		}
+	}
+
+	private void drawFace(int[] xs, int[] ys, Material m) {
+		for (int i = 0; i < xs.length; ++i) {
+			final Block b = getBlock(xs[i], ys[i]);
+			if (b != null) {
+				// a hand may have been drawn here, or something put in its place
+				b.removeMetadata("AnalogClock", AnalogClocks.plugin);
+				b.setType(m);
+			}
+		}
+	}
+
+	/**
+	 * Remove the blocks drawn by {@link #drawFace()}
+	 */
+	void clearFace() {
+		if (cx == Integer.MAX_VALUE) {
+			calcCenter();
+		}
+		if (cx == Integer.MAX_VALUE || cy == Integer.MAX_VALUE || cz == Integer.MAX_VALUE || world == null) {
+			return;
+		}
+		final ClockFace f = ClockFace.forRadius(cr);
+		if (mFace != null) {
+			clearFace(f.faceX, f.faceY, mFace);
+		}
+		if (mCenter != null) {
+			clearFace(f.hubX, f.hubY, mCenter);
+		}
+	}
+
+	private void clearFace(int[] xs, int[] ys, Material m) {
+		for (int i = 0; i < xs.length; ++i) {
+			final Block b = getBlock(xs[i], ys[i]);
+			if (b != null && b.getType() == m) {
+				b.setType(Material.AIR);
 			}
-			b.setMetadata("AnalogClock", new FixedMetadataValue(AnalogClocks.plugin, time));
 		}
 	}
 
@@ -272,7 +366,17 @@ public class Clock implements NBT.Compound {
 		}
 	}
 
+	/**
+	 * Remove the hands. <br />
+	 * Any block of a hand material is removed, so hands left behind by a crash
+	 * (without metadata) go too, except where it is part of the face: the rim,
+	 * hour marks and hub stay until {@link #clearFace()}.
+	 */
 	void clear() {
+		if (world == null || bNWD == null || bSEU == null) {
+			return;
+		}
+		final HashMap<Long, Material> face = faceBlocks();
 		int dx = clockFace == BlockFace.WEST || clockFace == BlockFace.EAST ? 0 : 1;
 		int dz = clockFace == BlockFace.NORTH || clockFace == BlockFace.SOUTH ? 0 : 1;
 		int dy = clockFace == BlockFace.UP || clockFace == BlockFace.DOWN ? 0 : 1;
@@ -282,7 +386,8 @@ public class Clock implements NBT.Compound {
 					Block b = world.getBlockAt(x, y, z);
 					if (b.getType() != Material.AIR) {
 						b.removeMetadata("AnalogClock", AnalogClocks.plugin);
-						if (b.getType() == mMin || b.getType() == mHour) {
+						if ((b.getType() == mMin || b.getType() == mHour)
+								&& face.get(BlockVector.pack(x, y, z)) != b.getType()) {
 							b.setType(Material.AIR);
 						}
 					}
@@ -291,10 +396,41 @@ public class Clock implements NBT.Compound {
 		}
 	}
 
+	/**
+	 * @return packed position -&gt; material, for each block drawFace draws
+	 */
+	private HashMap<Long, Material> faceBlocks() {
+		final HashMap<Long, Material> face = new HashMap<Long, Material>();
+		if (cx == Integer.MAX_VALUE) {
+			calcCenter();
+		}
+		if (cx == Integer.MAX_VALUE || cy == Integer.MAX_VALUE || cz == Integer.MAX_VALUE || world == null) {
+			return face;
+		}
+		final ClockFace f = ClockFace.forRadius(cr);
+		if (mFace != null) {
+			addFaceBlocks(f.faceX, f.faceY, mFace, face);
+		}
+		// drawn after the rim, so the hub wins where they meet
+		if (mCenter != null) {
+			addFaceBlocks(f.hubX, f.hubY, mCenter, face);
+		}
+		return face;
+	}
+
+	private void addFaceBlocks(int[] xs, int[] ys, Material m, HashMap<Long, Material> face) {
+		for (int i = 0; i < xs.length; ++i) {
+			final Block b = getBlock(xs[i], ys[i]);
+			if (b != null) {
+				face.put(BlockVector.pack(b.getX(), b.getY(), b.getZ()), m);
+			}
+		}
+	}
+
 	@Override
 	public String[] nbtKeys() {
 		return new String[]{"n", "d", "w", "m", "seu", "nwd",
-			"cf", "cb", "mM", "mH", "mC"};
+			"cf", "cb", "mM", "mH", "mC", "mF"};
 	}
 
 	@Override
@@ -322,17 +458,23 @@ public class Clock implements NBT.Compound {
 				return mHour == null ? (String) null : mHour.name();
 			case 10:
 				return mCenter == null ? (String) null : mCenter.name();
+			case 11:
+				return mFace == null ? (String) null : mFace.name();
 
 		}
 		return null;
 	}
 
-	static Clock fromNBT(NBTMap nbt, Server s) {
-		if (!nbt.containsKey("n")) {
+	/**
+	 * Decode the saved fields, without binding to the world. <br />
+	 * This does not touch the server, so can be run off the main thread.
+	 */
+	static Clock fromNBT(NBTMap nbt) {
+		if (nbt == null || !nbt.containsKey("n")) {
 			return null;
 		}
-		Clock c = new Clock(nbt.getString("n"), s, nbt.getBoolean("m", false));
-		c.world = s.getWorld(c.worldName = nbt.getString("w", ""));
+		Clock c = new Clock(nbt.getString("n"), null, nbt.getBoolean("m", false));
+		c.worldName = nbt.getString("w", "");
 		c.displayTime = nbt.getInteger("d", 0);
 		NBTList l = nbt.getNBTList("seu");
 		if (l != null && l.getTagType() == NBT.Tag.INT && l.size() == 3) {
@@ -358,7 +500,47 @@ public class Clock implements NBT.Compound {
 		if ((m = nbt.getString("mC")) != null) {
 			c.mCenter = Material.getMaterial(m);
 		}
+		if ((m = nbt.getString("mF")) != null) {
+			c.mFace = Material.getMaterial(m);
+		}
 		return c;
 	}
 
+	/**
+	 * Decodes a range of saved clocks, splitting the work across a fork-join
+	 * pool
+	 */
+	static class Loader extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		/**
+		 * ranges smaller than this are decoded on the current thread
+		 */
+		static final int SPLIT_SIZE = 64;
+		final NBTMap data;
+		final String[] keys;
+		final Clock[] out;
+		final int from, to;
+
+		Loader(NBTMap data, String[] keys, Clock[] out, int from, int to) {
+			this.data = data;
+			this.keys = keys;
+			this.out = out;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= SPLIT_SIZE) {
+				for (int i = from; i < to; ++i) {
+					out[i] = fromNBT(data.getNBTMap(keys[i]));
+				}
+			} else {
+				final int mid = (from + to) >>> 1;
+				invokeAll(new Loader(data, keys, out, from, mid), new Loader(data, keys, out, mid, to));
+			}
+		}
+	}
+
 }
@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2018 Jacob Scott <jascottytechie@gmail.com>
+ * Description: Static parts of a clock face, rasterized once per radius
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.jascotty2.analogclock;
+
+import java.util.HashMap;
+
+/**
+ * Rim, hour ticks and hub of a clock, as offsets from the center in the same
+ * face coordinates as {@link Clock#drawHand}: +x is 3 o'clock, +y is 12.
+ * <br /> Everything is integer midpoint-circle and Bresenham rasterization,
+ * and each radius is only ever computed once.
+ */
+class ClockFace {
+
+	/**
+	 * smaller faces would not leave room for the hands
+	 */
+	static final int MIN_FACE_RADIUS = 5;
+	private static final HashMap<Integer, ClockFace> cache = new HashMap<Integer, ClockFace>();
+	final int radius;
+	/**
+	 * rim and tick marks
+	 */
+	final int[] faceX, faceY;
+	/**
+	 * hub around the center, not including the center block itself
+	 */
+	final int[] hubX, hubY;
+
+	static synchronized ClockFace forRadius(int radius) {
+		ClockFace f = cache.get(radius);
+		if (f == null) {
+			cache.put(radius, f = new ClockFace(radius));
+		}
+		return f;
+	}
+
+	private ClockFace(int radius) {
+		this.radius = radius;
+		final int size = radius * 2 + 1;
+		// grid of the face, so overlapping points are only kept once
+		final boolean[] face = new boolean[size * size], hub = new boolean[size * size];
+		if (radius >= MIN_FACE_RADIUS) {
+			circle(face, radius);
+			// ticks run inwards from just inside the rim
+			final int outer = radius - 1, inner = radius - Math.max(1, radius / 6);
+			for (int h = 0; h < 12; ++h) {
+				final double a = h * Math.PI / 6;
+				line(face, radius,
+						(int) Math.round(Math.sin(a) * outer), (int) Math.round(Math.cos(a) * outer),
+						(int) Math.round(Math.sin(a) * inner), (int) Math.round(Math.cos(a) * inner));
+			}
+		}
+		disc(hub, radius, radius / 8);
+		// the center is drawn with the hands
+		hub[radius * size + radius] = false;
+
+		int n = count(face);
+		faceX = new int[n];
+		faceY = new int[n];
+		collect(face, radius, faceX, faceY);
+		n = count(hub);
+		hubX = new int[n];
+		hubY = new int[n];
+		collect(hub, radius, hubX, hubY);
+	}
+
+	private static void set(boolean[] grid, int radius, int x, int y) {
+		final int size = radius * 2 + 1;
+		if (x >= -radius && x <= radius && y >= -radius && y <= radius) {
+			grid[(y + radius) * size + x + radius] = true;
+		}
+	}
+
+	/**
+	 * midpoint circle outline
+	 */
+	static void circle(boolean[] grid, int radius) {
+		int x = radius, y = 0, err = 1 - radius;
+		while (x >= y) {
+			set(grid, radius, x, y);
+			set(grid, radius, y, x);
+			set(grid, radius, -y, x);
+			set(grid, radius, -x, y);
+			set(grid, radius, -x, -y);
+			set(grid, radius, -y, -x);
+			set(grid, radius, y, -x);
+			set(grid, radius, x, -y);
+			++y;
+			if (err < 0) {
+				err += 2 * y + 1;
+			} else {
+				--x;
+				err += 2 * (y - x) + 1;
+			}
+		}
+	}
+
+	/**
+	 * Bresenham line, both ends included
+	 */
+	static void line(boolean[] grid, int radius, int x0, int y0, int x1, int y1) {
+		final int dx = Math.abs(x1 - x0), dy = -Math.abs(y1 - y0);
+		final int sx = x0 < x1 ? 1 : -1, sy = y0 < y1 ? 1 : -1;
+		int err = dx + dy;
+		while (true) {
+			set(grid, radius, x0, y0);
+			if (x0 == x1 && y0 == y1) {
+				break;
+			}
+			final int e2 = 2 * err;
+			if (e2 >= dy) {
+				err += dy;
+				x0 += sx;
+			}
+			if (e2 <= dx) {
+				err += dx;
+				y0 += sy;
+			}
+		}
+	}
+
+	/**
+	 * filled disc, using the same midpoint threshold as the outline
+	 */
+	static void disc(boolean[] grid, int radius, int r) {
+		final int limit = r * r + r;
+		for (int y = -r; y <= r; ++y) {
+			for (int x = -r; x <= r; ++x) {
+				if (x * x + y * y <= limit) {
+					set(grid, radius, x, y);
+				}
+			}
+		}
+	}
+
+	private static int count(boolean[] grid) {
+		int n = 0;
+		for (boolean b : grid) {
+			if (b) {
+				++n;
+			}
+		}
+		return n;
+	}
+
+	private static void collect(boolean[] grid, int radius, int[] xs, int[] ys) {
+		final int size = radius * 2 + 1;
+		int n = 0;
+		for (int i = 0; i < grid.length; ++i) {
+			if (grid[i]) {
+				xs[n] = i % size - radius;
+				ys[n++] = i / size - radius;
+			}
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2012 Jacob Scott <jascottytechie@gmail.com> Description:
+ * index of words for finding everything within an edit distance of a query
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.jascotty2.libv3.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Burkhard-Keller tree over {@link Str#getLevenshteinDistance}. <br />
+ * Each child of a node is filed under its distance from that node, so by the
+ * triangle inequality a search within k of a query at distance d from a node
+ * only has to visit the children filed between d - k and d + k. <br />
+ * Words cannot be removed: build a new tree instead. Not thread safe.
+ */
+public class BKTree {
+
+	protected Node root = null;
+	protected int size = 0;
+
+	public BKTree() {
+	}
+
+	public BKTree(Collection<String> words) {
+		for (String w : words) {
+			add(w);
+		}
+	}
+
+	/**
+	 * Add a word
+	 *
+	 * @param word word to add
+	 * @return false if it was already in the tree
+	 */
+	public boolean add(String word) {
+		if (word == null) {
+			throw new IllegalArgumentException("Word must not be null");
+		} else if (root == null) {
+			root = new Node(word);
+			++size;
+			return true;
+		}
+		Node n = root;
+		while (true) {
+			final int d = Str.getLevenshteinDistance(word, n.word);
+			if (d == 0) {
+				return false;
+			}
+			final Node child = n.get(d);
+			if (child == null) {
+				n.put(d, new Node(word));
+				++size;
+				return true;
+			}
+			n = child;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Find every word within an edit distance of a query
+	 *
+	 * @param query word to look for
+	 * @param maxDistance largest distance to match
+	 * @return the matches, nearest first
+	 */
+	public List<String> find(String query, int maxDistance) {
+		final ArrayList<Match> found = new ArrayList<Match>();
+		if (root != null) {
+			search(root, query, maxDistance, found);
+		}
+		Collections.sort(found, new Comparator<Match>() {
+			@Override
+			public int compare(Match a, Match b) {
+				return a.distance != b.distance ? a.distance - b.distance : a.word.compareTo(b.word);
+			}
+		});
+		final ArrayList<String> ret = new ArrayList<String>(found.size());
+		for (Match m : found) {
+			ret.add(m.word);
+		}
+		return ret;
+	}
+
+	/**
+	 * Find the nearest word to a query
+	 *
+	 * @param query word to look for
+	 * @param maxDistance largest distance to match
+	 * @return the nearest word (the first alphabetically, if tied), or null
+	 * if none are within maxDistance
+	 */
+	public String findClosest(String query, int maxDistance) {
+		final List<String> found = find(query, maxDistance);
+		return found.isEmpty() ? null : found.get(0);
+	}
+
+	private static void search(Node n, String query, int k, List<Match> found) {
+		// no child is filed further than maxChild, so past k + maxChild the
+		// exact distance does not matter
+		final int d = Str.getLevenshteinDistance(query, n.word, k + n.maxChild);
+		if (d == -1) {
+			return;
+		} else if (d <= k) {
+			found.add(new Match(n.word, d));
+		}
+		if (n.children != null) {
+			for (int i = Math.max(1, d - k), end = Math.min(n.children.length - 1, d + k); i <= end; ++i) {
+				if (n.children[i] != null) {
+					search(n.children[i], query, k, found);
+				}
+			}
+		}
+	}
+
+	protected static final class Node {
+
+		final String word;
+		/**
+		 * children by distance: edit distances between names are small
+		 */
+		Node[] children = null;
+		/**
+		 * furthest distance any child is filed under
+		 */
+		int maxChild = 0;
+
+		Node(String word) {
+			this.word = word;
+		}
+
+		Node get(int distance) {
+			return children != null && distance < children.length ? children[distance] : null;
+		}
+
+		void put(int distance, Node child) {
+			if (children == null || distance >= children.length) {
+				final Node[] grown = new Node[Math.max(distance + 1, children == null ? 4 : children.length * 2)];
+				if (children != null) {
+					System.arraycopy(children, 0, grown, 0, children.length);
+				}
+				children = grown;
+			}
+			children[distance] = child;
+			if (distance > maxChild) {
+				maxChild = distance;
+			}
+		}
+	}
+
+	private static final class Match {
+
+		final String word;
+		final int distance;
+
+		Match(String word, int distance) {
+			this.word = word;
+			this.distance = distance;
+		}
+	}
+}
@@ -32,7 +32,7 @@ public class FastMath {
 	// 60 = 1.5541
 	// 100 = 1.5608
 	// table size for 100 = 10,000 atan operations
-	private static int ATAN_LOOKUP_MAX = 40;
+	private final static int DEFAULT_ATAN_LOOKUP_MAX = 40;
 	/**
 	 * 2PI
 	 */
@@ -47,13 +47,58 @@ public class FastMath {
 	public final static double PI4 = Math.PI / 4;
 	private final static double ATAN_ACCURACY = .01;
 	private final static double ATAN_ACCURACY_INVERSE = 1 / ATAN_ACCURACY;
-	private final static double SIN_ACCURACY = .01;
 	private final static double TAN_ACCURACY = .005;
 	private final static double PI_L = 1.2246467991473532e-16,
 			TWO_60 = 0x1000000000000000L;
-	static double[] atanLookupTable = null;
-	static double[] tanLookupTable = null;
-	static double sinLookupTable[] = null;
+	// current atan/tan tables: replaced as a whole, never modified
+	private static volatile Tables tables = null;
+	// sin lookup covers one full turn, and the size is a power of two so that
+	// range reduction is a multiply and a mask
+	private final static int SIN_BITS = 12;
+	/**
+	 * number of sin table entries per turn
+	 */
+	public final static int SIN_COUNT = 1 << SIN_BITS;
+	private final static int SIN_MASK = SIN_COUNT - 1;
+	private final static int COS_OFFSET = SIN_COUNT / 4;
+	private final static double SIN_INDEX = SIN_COUNT / TPI;
+	private final static float SIN_INDEX_F = (float) SIN_INDEX;
+	// past this, the table index would overflow an int
+	private final static double SIN_RANGE = Integer.MAX_VALUE / SIN_INDEX - 1;
+	// one extra entry, so interpolation can always read [i + 1]
+	static final double[] sinTable = new double[SIN_COUNT + 1];
+	static final float[] sinTableF = new float[SIN_COUNT + 1];
+
+	/**
+	 * binary angle units in one full turn
+	 */
+	public final static int BINARY_TURN = 1 << 16;
+	/**
+	 * fixed-point 1.0 for {@link #sinFixed(int)} and {@link #cosFixed(int)}
+	 */
+	public final static int FIXED_ONE = 1 << 16;
+	private final static int BINARY_MASK = BINARY_TURN - 1;
+	private final static int BINARY_QUARTER = BINARY_TURN / 4;
+	// first quarter turn of sin, in 16.16 fixed point
+	static final int[] sinFixedTable = new int[BINARY_QUARTER + 1];
+
+	static {
+		for (int i = 0; i <= BINARY_QUARTER; ++i) {
+			sinFixedTable[i] = (int) Math.round(Math.sin(i * TPI / BINARY_TURN) * FIXED_ONE);
+		}
+		sinFixedTable[0] = 0;
+		sinFixedTable[BINARY_QUARTER] = FIXED_ONE;
+		for (int i = 0; i <= SIN_COUNT; ++i) {
+			sinTable[i] = Math.sin(i * TPI / SIN_COUNT);
+		}
+		// keep the quadrants exact
+		sinTable[0] = sinTable[SIN_COUNT / 2] = sinTable[SIN_COUNT] = 0;
+		sinTable[SIN_COUNT / 4] = 1;
+		sinTable[SIN_COUNT * 3 / 4] = -1;
+		for (int i = 0; i <= SIN_COUNT; ++i) {
+			sinTableF[i] = (float) sinTable[i];
+		}
+	}
 
 	/**
 	 * Initialize the lookup tables<br />
@@ -71,49 +116,86 @@ public class FastMath {
 	 * @param max precision scale
 	 */
 	public static void initLookupTables(int max) {
-		if (max > ATAN_LOOKUP_MAX) {
-			ATAN_LOOKUP_MAX = max;
-			tanLookupTable = null;
+		synchronized (FastMath.class) {
+			final Tables t = tables;
+			if (t == null || max > t.atanMax) {
+				// build the new set first, then publish it in one write
+				tables = new Tables(Math.max(max, DEFAULT_ATAN_LOOKUP_MAX), t);
+			}
 		}
-		initLookupTables();
 	}
 
 	public static void initLookupTables() {
-		if (atanLookupTable == null) {
-			atanLookupTable = new double[(int) Math.ceil(ATAN_LOOKUP_MAX / ATAN_ACCURACY) + 1];
-			int i = 0;
-			for (double t = 0; t <= ATAN_LOOKUP_MAX + .00001; t += ATAN_ACCURACY) {
-				// fix floating point errors
-				atanLookupTable[i++] = Math.atan(Math.round(t * ATAN_ACCURACY_INVERSE) / ATAN_ACCURACY_INVERSE);
-			}
+		tables();
+	}
+
+	/**
+	 * @return how far the atan table reaches before returning +/- PI/2
+	 */
+	public static int getAtanLookupMax() {
+		return tables().atanMax;
+	}
 
-			sinLookupTable = new double[(int) Math.ceil(Math.PI / SIN_ACCURACY) + 1];
-			i = 0;
-			for (double t = 0; t <= Math.PI + .00001; t += SIN_ACCURACY) {
-				sinLookupTable[i++] = Math.sin(t);
+	static Tables tables() {
+		Tables t = tables;
+		if (t == null) {
+			synchronized (FastMath.class) {
+				if ((t = tables) == null) {
+					tables = t = new Tables(DEFAULT_ATAN_LOOKUP_MAX, null);
+				}
 			}
+		}
+		return t;
+	}
+
+	/**
+	 * One immutable set of atan and tan tables. <br />
+	 * Readers take a single reference to the current set, so the table size
+	 * and contents they use always agree, even while a larger set is being
+	 * built and published.
+	 */
+	static final class Tables {
+
+		final int atanMax;
+		final double[] atan;
+		final double[] tan;
 
-			// tan = sin / cos
-			// [-PI/2, PI/2]
-			tanLookupTable = new double[(int) Math.ceil(PI2 / TAN_ACCURACY) + 1];
-			i = 0;
-			for (double t = 0; t < PI2 + .00001; t += TAN_ACCURACY) {
+		Tables(int atanMax, Tables previous) {
+			this.atanMax = atanMax;
+			atan = new double[(int) Math.ceil(atanMax / ATAN_ACCURACY) + 1];
+			int i = 0;
+			for (double t = 0; t <= atanMax + .00001 && i < atan.length; t += ATAN_ACCURACY) {
 				// fix floating point errors
-				tanLookupTable[i++] = Math.tan(t);
+				atan[i++] = Math.atan(Math.round(t * ATAN_ACCURACY_INVERSE) / ATAN_ACCURACY_INVERSE);
+			}
+
+			if (previous != null) {
+				// tan does not depend on the atan range, and is never modified
+				tan = previous.tan;
+			} else {
+				// tan = sin / cos
+				// [-PI/2, PI/2]
+				tan = new double[(int) Math.ceil(PI2 / TAN_ACCURACY) + 1];
+				i = 0;
+				for (double t = 0; t < PI2 + .00001 && i < tan.length; t += TAN_ACCURACY) {
+					// fix floating point errors
+					tan[i++] = Math.tan(t);
+				}
+				tan[tan.length - 1] = Double.POSITIVE_INFINITY;
 			}
-			tanLookupTable[tanLookupTable.length - 1] = Double.POSITIVE_INFINITY;
 		}
 	}
 
 	public static double atan2(double y, double x) {
-		if (atanLookupTable == null) {
-			initLookupTables();
-		}
+		return atan2(tables(), y, x);
+	}
+
+	private static double atan2(Tables t, double y, double x) {
 		// edge case logic stolen from StrictMath
 		if (x != x || y != y) {
 			return Double.NaN;
 		} else if (x == 1) {
-			return atan(y);
+			return atan(t, y);
 		} else if (x == Double.POSITIVE_INFINITY) {
 			if (y == Double.POSITIVE_INFINITY) {
 				return PI4;
@@ -145,7 +227,7 @@ public class FastMath {
 		} else if (x < 0 && z < 1 / TWO_60) {
 			z = 0;
 		} else {
-			z = atan(z);
+			z = atan(t, z);
 		}
 		if (x > 0) {
 			return y > 0 ? z : -z;
@@ -154,58 +236,353 @@ public class FastMath {
 	}
 
 	public static double atan(double x) {
-		if (atanLookupTable == null) {
-			initLookupTables();
-		}
-		if (x > ATAN_LOOKUP_MAX || x < -ATAN_LOOKUP_MAX) {
+		return atan(tables(), x);
+	}
+
+	private static double atan(Tables t, double x) {
+		if (x > t.atanMax || x < -t.atanMax) {
 			return x < 0 ? -PI2 : PI2;
 		}
 		int ti = (int) Math.round(x * ATAN_ACCURACY_INVERSE);
-		return ti >= 0 ? atanLookupTable[ti] : -atanLookupTable[-ti];
+		return ti >= 0 ? t.atan[ti] : -t.atan[-ti];
 	}
 
+	/**
+	 * sin from the nearest table entry (max error about 0.0008)
+	 *
+	 * @param x angle in radians
+	 * @return approximate sin
+	 */
 	public static double sin(double x) {
-		if (atanLookupTable == null) {
-			initLookupTables();
+		return sinTable[nearestIndex(x)];
+	}
+
+	/**
+	 * cos from the nearest table entry (max error about 0.0008)
+	 *
+	 * @param x angle in radians
+	 * @return approximate cos
+	 */
+	public static double cos(double x) {
+		return sinTable[(nearestIndex(x) + COS_OFFSET) & SIN_MASK];
+	}
+
+	/**
+	 * sin, linearly interpolated between table entries (max error about
+	 * 3e-7)
+	 *
+	 * @param x angle in radians
+	 * @return approximate sin
+	 */
+	public static double sinLerp(double x) {
+		if (x > SIN_RANGE || x < -SIN_RANGE) {
+			x %= TPI;
 		}
-		if (x > Math.PI) {
-			while (x > Math.PI) {
-				x -= TPI;
-			}
-		} else if (x < -Math.PI) {
-			while (x < -Math.PI) {
-				x += TPI;
-			}
+		final double f = x * SIN_INDEX;
+		int i = (int) f;
+		if (f < i) {
+			--i;
 		}
-		return x < 0
-				? -sinLookupTable[(int) Math.round(-x / SIN_ACCURACY)]
-				: sinLookupTable[(int) Math.round(x / SIN_ACCURACY)];
+		return lerp(i & SIN_MASK, f - i);
 	}
 
-	public static double cos(double x) {
-		if (atanLookupTable == null) {
-			initLookupTables();
+	/**
+	 * cos, linearly interpolated between table entries (max error about
+	 * 3e-7)
+	 *
+	 * @param x angle in radians
+	 * @return approximate cos
+	 */
+	public static double cosLerp(double x) {
+		if (x > SIN_RANGE || x < -SIN_RANGE) {
+			x %= TPI;
+		}
+		final double f = x * SIN_INDEX;
+		int i = (int) f;
+		if (f < i) {
+			--i;
 		}
-		x += PI2;
-		if (x > Math.PI) {
-			while (x > Math.PI) {
-				x -= TPI;
+		return lerp((i + COS_OFFSET) & SIN_MASK, f - i);
+	}
+
+	public static float sin(float x) {
+		return sinTableF[nearestIndex(x)];
+	}
+
+	public static float cos(float x) {
+		return sinTableF[(nearestIndex(x) + COS_OFFSET) & SIN_MASK];
+	}
+
+	public static float sinLerp(float x) {
+		if (x > SIN_RANGE || x < -SIN_RANGE) {
+			x %= (float) TPI;
+		}
+		final float f = x * SIN_INDEX_F;
+		int i = (int) f;
+		if (f < i) {
+			--i;
+		}
+		return lerp(i & SIN_MASK, f - i);
+	}
+
+	public static float cosLerp(float x) {
+		if (x > SIN_RANGE || x < -SIN_RANGE) {
+			x %= (float) TPI;
+		}
+		final float f = x * SIN_INDEX_F;
+		int i = (int) f;
+		if (f < i) {
+			--i;
+		}
+		return lerp((i + COS_OFFSET) & SIN_MASK, f - i);
+	}
+
+	/**
+	 * sin and cos from a single range reduction, linearly interpolated
+	 *
+	 * @param x angle in radians
+	 * @param out receives sin at [0] and cos at [1]
+	 */
+	public static void sincos(double x, double[] out) {
+		if (x > SIN_RANGE || x < -SIN_RANGE) {
+			x %= TPI;
+		}
+		final double f = x * SIN_INDEX;
+		int i = (int) f;
+		if (f < i) {
+			--i;
+		}
+		final double frac = f - i;
+		out[0] = lerp(i & SIN_MASK, frac);
+		out[1] = lerp((i + COS_OFFSET) & SIN_MASK, frac);
+	}
+
+	public static void sincos(float x, float[] out) {
+		if (x > SIN_RANGE || x < -SIN_RANGE) {
+			x %= (float) TPI;
+		}
+		final float f = x * SIN_INDEX_F;
+		int i = (int) f;
+		if (f < i) {
+			--i;
+		}
+		final float frac = f - i;
+		out[0] = lerp(i & SIN_MASK, frac);
+		out[1] = lerp((i + COS_OFFSET) & SIN_MASK, frac);
+	}
+
+	/**
+	 * {@link #sin(double)} of every angle in <code>in</code>
+	 *
+	 * @param in angles in radians
+	 * @param out receives the results; may be the same array as in
+	 */
+	public static void sin(double[] in, double[] out) {
+		sin(in, 0, out, 0, in.length);
+	}
+
+	/**
+	 * {@link #sin(double)} of <code>len</code> angles, starting at
+	 * <code>in[inOff]</code>, into <code>out[outOff]</code> onwards. <br />
+	 * Bounds are checked once for the whole range, so the loop body is just
+	 * the range reduction and the table load.
+	 */
+	public static void sin(double[] in, int inOff, double[] out, int outOff, int len) {
+		checkRange(in.length, inOff, len);
+		checkRange(out.length, outOff, len);
+		final double[] table = sinTable;
+		for (int i = 0; i < len; ++i) {
+			out[outOff + i] = table[nearestIndex(in[inOff + i])];
+		}
+	}
+
+	public static void cos(double[] in, double[] out) {
+		cos(in, 0, out, 0, in.length);
+	}
+
+	public static void cos(double[] in, int inOff, double[] out, int outOff, int len) {
+		checkRange(in.length, inOff, len);
+		checkRange(out.length, outOff, len);
+		final double[] table = sinTable;
+		for (int i = 0; i < len; ++i) {
+			out[outOff + i] = table[(nearestIndex(in[inOff + i]) + COS_OFFSET) & SIN_MASK];
+		}
+	}
+
+	/**
+	 * {@link #sincos(double, double[])} of every angle in <code>in</code>
+	 *
+	 * @param in angles in radians
+	 * @param sinOut receives sin of each angle
+	 * @param cosOut receives cos of each angle
+	 */
+	public static void sincos(double[] in, double[] sinOut, double[] cosOut) {
+		sincos(in, 0, sinOut, cosOut, 0, in.length);
+	}
+
+	public static void sincos(double[] in, int inOff, double[] sinOut, double[] cosOut, int outOff, int len) {
+		checkRange(in.length, inOff, len);
+		checkRange(sinOut.length, outOff, len);
+		checkRange(cosOut.length, outOff, len);
+		final double[] table = sinTable;
+		for (int n = 0; n < len; ++n) {
+			double x = in[inOff + n];
+			if (x > SIN_RANGE || x < -SIN_RANGE) {
+				x %= TPI;
 			}
-		} else if (x < -Math.PI) {
-			while (x < -Math.PI) {
-				x += TPI;
+			final double f = x * SIN_INDEX;
+			int i = (int) f;
+			if (f < i) {
+				--i;
 			}
+			final double frac = f - i;
+			final int s = i & SIN_MASK, c = (i + COS_OFFSET) & SIN_MASK;
+			sinOut[outOff + n] = table[s] + (table[s + 1] - table[s]) * frac;
+			cosOut[outOff + n] = table[c] + (table[c + 1] - table[c]) * frac;
 		}
-		return x < 0
-				? -sinLookupTable[(int) Math.round(-x / SIN_ACCURACY)]
-				: sinLookupTable[(int) Math.round(x / SIN_ACCURACY)];
+	}
 
+	/**
+	 * {@link #atan2(double, double)} of each pair <code>(y[i], x[i])</code>
+	 *
+	 * @param y y coordinates
+	 * @param x x coordinates
+	 * @param out receives the angles; may be the same array as y or x
+	 */
+	public static void atan2(double[] y, double[] x, double[] out) {
+		atan2(y, x, 0, out, 0, y.length);
 	}
 
-	public static double tan(double x) {
-		if (atanLookupTable == null) {
-			initLookupTables();
+	public static void atan2(double[] y, double[] x, int inOff, double[] out, int outOff, int len) {
+		checkRange(y.length, inOff, len);
+		checkRange(x.length, inOff, len);
+		checkRange(out.length, outOff, len);
+		// one table snapshot for the whole batch
+		final Tables t = tables();
+		for (int i = 0; i < len; ++i) {
+			out[outOff + i] = atan2(t, y[inOff + i], x[inOff + i]);
+		}
+	}
+
+	private static void checkRange(int length, int off, int len) {
+		if (off < 0 || len < 0 || off > length - len) {
+			throw new ArrayIndexOutOfBoundsException("range [" + off + ", " + off + " + " + len + ") out of bounds for length " + length);
+		}
+	}
+
+	/**
+	 * Binary angle for a fraction of a turn, eg. <code>binaryAngle(3, 12)</code>
+	 * for 3 o'clock
+	 *
+	 * @param part steps around the circle
+	 * @param steps steps in one full turn
+	 * @return angle, where {@link #BINARY_TURN} is one full turn
+	 */
+	public static int binaryAngle(int part, int steps) {
+		return (int) Math.round((double) part * BINARY_TURN / steps);
+	}
+
+	/**
+	 * @param radians angle in radians
+	 * @return nearest binary angle, where {@link #BINARY_TURN} is one full
+	 * turn
+	 */
+	public static int toBinaryAngle(double radians) {
+		return (int) Math.round((radians % TPI) * (BINARY_TURN / TPI));
+	}
+
+	/**
+	 * sin of a binary angle, in 16.16 fixed point. <br />
+	 * No floating-point math is used: the angle wraps by masking, and each
+	 * unit has its own table entry (rounded to the nearest 1/65536).
+	 *
+	 * @param angle binary angle, {@link #BINARY_TURN} per turn (any int is
+	 * valid)
+	 * @return sin * {@link #FIXED_ONE}
+	 */
+	public static int sinFixed(int angle) {
+		final int a = angle & BINARY_MASK;
+		final int i = a & (BINARY_QUARTER - 1);
+		switch (a / BINARY_QUARTER) {
+			case 0:
+				return sinFixedTable[i];
+			case 1:
+				return sinFixedTable[BINARY_QUARTER - i];
+			case 2:
+				return -sinFixedTable[i];
+			default:
+				return -sinFixedTable[BINARY_QUARTER - i];
 		}
+	}
+
+	/**
+	 * cos of a binary angle, in 16.16 fixed point
+	 *
+	 * @param angle binary angle, {@link #BINARY_TURN} per turn (any int is
+	 * valid)
+	 * @return cos * {@link #FIXED_ONE}
+	 */
+	public static int cosFixed(int angle) {
+		return sinFixed(angle + BINARY_QUARTER);
+	}
+
+	/**
+	 * @param angle binary angle
+	 * @param out receives sin at [0] and cos at [1], in 16.16 fixed point
+	 */
+	public static void sincosFixed(int angle, int[] out) {
+		out[0] = sinFixed(angle);
+		out[1] = sinFixed(angle + BINARY_QUARTER);
+	}
+
+	public static double sinBinary(int angle) {
+		return sinFixed(angle) / (double) FIXED_ONE;
+	}
+
+	public static double cosBinary(int angle) {
+		return sinFixed(angle + BINARY_QUARTER) / (double) FIXED_ONE;
+	}
+
+	/**
+	 * table index nearest to the angle, already masked to one turn
+	 */
+	private static int nearestIndex(double x) {
+		if (x > SIN_RANGE || x < -SIN_RANGE) {
+			x %= TPI;
+		}
+		final double f = x * SIN_INDEX + .5;
+		int i = (int) f;
+		// floor, not truncate, for negative angles
+		if (f < i) {
+			--i;
+		}
+		return i & SIN_MASK;
+	}
+
+	private static int nearestIndex(float x) {
+		if (x > SIN_RANGE || x < -SIN_RANGE) {
+			x %= (float) TPI;
+		}
+		final float f = x * SIN_INDEX_F + .5f;
+		int i = (int) f;
+		if (f < i) {
+			--i;
+		}
+		return i & SIN_MASK;
+	}
+
+	private static double lerp(int i, double frac) {
+		final double a = sinTable[i];
+		return a + (sinTable[i + 1] - a) * frac;
+	}
+
+	private static float lerp(int i, float frac) {
+		final float a = sinTableF[i];
+		return a + (sinTableF[i + 1] - a) * frac;
+	}
+
+	public static double tan(double x) {
+		final double[] tanLookupTable = tables().tan;
 		if (x >= PI2) {
 			while (x >= PI2) {
 				x -= Math.PI;
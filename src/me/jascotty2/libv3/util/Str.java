@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.text.NumberFormat;
+import java.util.Arrays;
 import java.util.Collection;
 
 public class Str extends OutputStream {
@@ -1149,5 +1150,107 @@ public class Str extends OutputStream {
 		// actually has the most recent cost counts
 		return p[n];
 	}
+
+	/**
+	 * <p>Find the Levenshtein distance between two Strings, if it is no more
+	 * than a threshold.</p>
+	 *
+	 * <p>Only the diagonal band of cells within <code>threshold</code> of the
+	 * main diagonal is computed, so this takes O(threshold * min(n, m))
+	 * time rather than O(n * m). It also stops as soon as every cell in a row
+	 * is over the threshold, since the distance can only grow from there.</p>
+	 *
+	 * <pre>
+	 * StringUtil.getLevenshteinDistance("frog", "fog", 1)      = 1
+	 * StringUtil.getLevenshteinDistance("fly", "ant", 2)       = -1
+	 * StringUtil.getLevenshteinDistance("hello", "hallo", 0)   = -1
+	 * StringUtil.getLevenshteinDistance("elephant", "hippo", 7) = 7
+	 * StringUtil.getLevenshteinDistance("elephant", "hippo", 6) = -1
+	 * </pre>
+	 *
+	 * @param s the first String, must not be null
+	 * @param t the second String, must not be null
+	 * @param threshold the largest distance of interest, must not be negative
+	 * @return result distance, or -1 if it is more than threshold
+	 * @throws IllegalArgumentException if either String input <code>null</code>
+	 * or the threshold is negative
+	 */
+	public static int getLevenshteinDistance(String s, String t, int threshold) {
+		if (s == null || t == null) {
+			throw new IllegalArgumentException("Strings must not be null");
+		} else if (threshold < 0) {
+			throw new IllegalArgumentException("Threshold must not be negative");
+		}
+
+		int n = s.length(); // length of s
+		int m = t.length(); // length of t
+
+		if (n == 0) {
+			return m <= threshold ? m : -1;
+		} else if (m == 0) {
+			return n <= threshold ? n : -1;
+		} else if (Math.abs(n - m) > threshold) {
+			// at least this many insertions or deletions
+			return -1;
+		}
+
+		if (n > m) {
+			// keep the rows short
+			final String tmp = s;
+			s = t;
+			t = tmp;
+			n = m;
+			m = t.length();
+		}
+		// no distance is ever more than the longer length
+		threshold = Math.min(threshold, m);
+		// stands in for every cell outside the band: only ever compared
+		// against the threshold, and small enough not to overflow
+		final int over = threshold + 1;
+
+		int p[] = new int[n + 1]; //'previous' cost array, horizontally
+		int d[] = new int[n + 1]; // cost array, horizontally
+		int _d[]; //placeholder to assist in swapping p and d
+
+		final int boundary = Math.min(n, threshold);
+		for (int i = 0; i <= boundary; i++) {
+			p[i] = i;
+		}
+		Arrays.fill(p, boundary + 1, n + 1, over);
+		Arrays.fill(d, over);
+
+		for (int j = 1; j <= m; j++) {
+			final char t_j = t.charAt(j - 1);
+			d[0] = j <= threshold ? j : over;
+
+			// the band of this row
+			final int min = Math.max(1, j - threshold);
+			final int max = Math.min(n, j + threshold);
+			if (min > 1) {
+				d[min - 1] = over;
+			}
+			int rowMin = d[0];
+			for (int i = min; i <= max; i++) {
+				final int cost = s.charAt(i - 1) == t_j ? 0 : 1;
+				d[i] = Math.min(Math.min(Math.min(d[i - 1], p[i]) + 1, p[i - 1] + cost), over);
+				if (d[i] < rowMin) {
+					rowMin = d[i];
+				}
+			}
+			if (max < n) {
+				// the next row reads one past this band
+				d[max + 1] = over;
+			}
+			if (rowMin > threshold) {
+				return -1;
+			}
+
+			_d = p;
+			p = d;
+			d = _d;
+		}
+
+		return p[n] <= threshold ? p[n] : -1;
+	}
 } // end class Str
 
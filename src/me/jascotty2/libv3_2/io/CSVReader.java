@@ -0,0 +1,452 @@
+/**
+ * Copyright (C) 2014 Jacob Scott <jascottytechie@gmail.com>
+ * Description: Streaming CSV reader, one row at a time over a single buffered
+ * pass
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.jascotty2.libv3_2.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the same format that {@link FileIO#saveCSVFile} writes: tab, comma or
+ * semicolon delimited, with quoted fields that may contain delimiters, line
+ * breaks and doubled quotes. <br />
+ * Fields are returned as views of a row buffer that is reused for the next
+ * row, so nothing is copied unless {@link #getString(int)} or
+ * {@link #getRow()} is used.
+ */
+public class CSVReader implements Closeable {
+
+	/**
+	 * how many characters are looked at to find the delimiter
+	 */
+	public static final int SNIFF_LENGTH = 8192;
+	protected final Reader in;
+	protected final char[] buf;
+	protected int pos = 0, limit = 0;
+	protected boolean eof = false;
+	protected char delim;
+	// current row: the unescaped characters, and where each field ends
+	protected char[] row = new char[256];
+	protected int rowLength = 0;
+	protected int[] fieldEnds = new int[16];
+	protected int fieldCount = 0;
+	protected Field[] fields = new Field[0];
+	// parser state that carries between characters
+	protected boolean inQuotes = false, quoteClosed = false, skipLF = false;
+	// for feed(): whether a row has been started but not finished
+	protected boolean rowStarted = false;
+	protected long rowNumber = 0;
+
+	/**
+	 * Handler for {@link #forEach(RowHandler)}
+	 */
+	public static interface RowHandler {
+
+		/**
+		 * @param row the reader, positioned at the row
+		 * @return false to stop reading
+		 * @throws IOException
+		 */
+		boolean row(CSVReader row) throws IOException;
+	}
+
+	/**
+	 * Open a UTF-8 file, detecting the delimiter
+	 *
+	 * @param file file to read
+	 * @throws IOException
+	 */
+	public CSVReader(File file) throws IOException {
+		this(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Read from a stream, detecting the delimiter
+	 *
+	 * @param in source (does not need to be buffered)
+	 * @throws IOException
+	 */
+	public CSVReader(Reader in) throws IOException {
+		this.in = in;
+		buf = new char[SNIFF_LENGTH];
+		// the first block is read in full, so the delimiter can be found
+		// without reading anything twice
+		int n;
+		while (limit < buf.length && (n = in.read(buf, limit, buf.length - limit)) != -1) {
+			limit += n;
+		}
+		eof = limit < buf.length;
+		delim = sniffDelimiter(buf, 0, limit, !eof);
+	}
+
+	/**
+	 * Read from a stream with a known delimiter
+	 *
+	 * @param in source (does not need to be buffered)
+	 * @param delim field delimiter, or 0 if each line is a single field
+	 */
+	public CSVReader(Reader in, char delim) {
+		this.in = in;
+		this.delim = delim;
+		buf = new char[SNIFF_LENGTH];
+	}
+
+	/**
+	 * Parser for text given to {@link #feed}, with no stream behind it
+	 *
+	 * @param delim field delimiter, or 0 if each line is a single field
+	 */
+	public CSVReader(char delim) {
+		this.in = null;
+		this.delim = delim;
+		this.eof = true;
+		buf = new char[0];
+	}
+
+	/**
+	 * Find the first recognized delimiter that is not inside quotes
+	 *
+	 * @param text characters to look at
+	 * @param off start
+	 * @param len number of characters
+	 * @param more whether the text continues past this range
+	 * @return the delimiter; if there is none, ',' if there is more text to
+	 * come, otherwise 0 (every line is one field)
+	 */
+	public static char sniffDelimiter(char[] text, int off, int len, boolean more) {
+		boolean quoted = false;
+		for (int i = off; i < off + len; ++i) {
+			final char c = text[i];
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (!quoted && FileIO.delimeters.contains(c)) {
+				return c;
+			}
+		}
+		return more ? ',' : 0;
+	}
+
+	public char getDelimiter() {
+		return delim;
+	}
+
+	/**
+	 * @return how many rows have been read so far
+	 */
+	public long getRowNumber() {
+		return rowNumber;
+	}
+
+	/**
+	 * Move to the next row
+	 *
+	 * @return false at the end of the input
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException {
+		rowLength = 0;
+		fieldCount = 0;
+		inQuotes = quoteClosed = false;
+		boolean any = false;
+		while (true) {
+			if (pos >= limit && !fill()) {
+				if (!any) {
+					return false;
+				}
+				endField();
+				++rowNumber;
+				return true;
+			}
+			final char c = buf[pos++];
+			if (skipLF) {
+				skipLF = false;
+				if (c == '\n') {
+					continue;
+				}
+			}
+			any = true;
+			if (parse(c)) {
+				++rowNumber;
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Feed one character through the parser
+	 *
+	 * @return true if it ended the row
+	 */
+	protected final boolean parse(char c) {
+		if (delim == 0) {
+			// no delimiter: lines are taken as they are
+			if (c == '\r' || c == '\n') {
+				skipLF = c == '\r';
+				endField();
+				return true;
+			}
+			append(c);
+		} else if (inQuotes) {
+			if (c == '"') {
+				inQuotes = false;
+				quoteClosed = true;
+			} else if (c == '\r' || c == '\n') {
+				skipLF = c == '\r';
+				append('\n');
+			} else {
+				append(c == FileIO.nullQuo ? '"' : c);
+			}
+		} else {
+			final boolean closed = quoteClosed;
+			quoteClosed = false;
+			if (c == '"') {
+				inQuotes = true;
+				if (closed) {
+					// doubled quote inside a quoted field
+					append('"');
+				}
+			} else if (c == delim) {
+				endField();
+			} else if (c == '\r' || c == '\n') {
+				skipLF = c == '\r';
+				endField();
+				return true;
+			} else {
+				append(c == FileIO.nullQuo ? '"' : c);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Parse a block of text that has already been read, adding each row it
+	 * completes. A row left open at the end of the block is continued by the
+	 * next call.
+	 *
+	 * @param text characters
+	 * @param off start
+	 * @param len number of characters
+	 * @param out receives copies of the completed rows
+	 */
+	public void feed(char[] text, int off, int len, List<String[]> out) {
+		for (int i = off, end = off + len; i < end; ++i) {
+			final char c = text[i];
+			if (skipLF) {
+				skipLF = false;
+				if (c == '\n') {
+					continue;
+				}
+			}
+			rowStarted = true;
+			if (parse(c)) {
+				out.add(getRow());
+				rowLength = 0;
+				fieldCount = 0;
+				inQuotes = quoteClosed = rowStarted = false;
+			}
+		}
+	}
+
+	/**
+	 * End of the text given to {@link #feed}: adds the last row if it was
+	 * not terminated by a line break
+	 *
+	 * @param out receives the row
+	 */
+	public void finish(List<String[]> out) {
+		if (rowStarted) {
+			endField();
+			out.add(getRow());
+			rowLength = 0;
+			fieldCount = 0;
+			inQuotes = quoteClosed = rowStarted = false;
+		}
+	}
+
+	/**
+	 * @return true if everything fed so far ended on a row boundary
+	 */
+	public boolean atRowStart() {
+		return !rowStarted && !skipLF;
+	}
+
+	protected boolean fill() throws IOException {
+		if (eof) {
+			return false;
+		}
+		int n;
+		while ((n = in.read(buf, 0, buf.length)) == 0) {
+		}
+		if (n == -1) {
+			eof = true;
+			pos = limit = 0;
+			return false;
+		}
+		pos = 0;
+		limit = n;
+		return true;
+	}
+
+	protected final void append(char c) {
+		if (rowLength == row.length) {
+			char[] grown = new char[row.length * 2];
+			System.arraycopy(row, 0, grown, 0, rowLength);
+			row = grown;
+		}
+		row[rowLength++] = c;
+	}
+
+	protected final void endField() {
+		if (fieldCount == fieldEnds.length) {
+			int[] grown = new int[fieldEnds.length * 2];
+			System.arraycopy(fieldEnds, 0, grown, 0, fieldCount);
+			fieldEnds = grown;
+		}
+		fieldEnds[fieldCount++] = rowLength;
+	}
+
+	/**
+	 * @return number of fields in the current row
+	 */
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	/**
+	 * A field of the current row. <br />
+	 * The returned view is only valid until the next call to
+	 * {@link #next()}; use {@link #getString(int)} to keep it.
+	 *
+	 * @param i field index
+	 * @return view of the field
+	 */
+	public CharSequence getField(int i) {
+		if (i < 0 || i >= fieldCount) {
+			throw new IndexOutOfBoundsException("Field " + i + " of " + fieldCount);
+		}
+		if (i >= fields.length) {
+			Field[] grown = new Field[Math.max(fieldCount, fields.length * 2)];
+			System.arraycopy(fields, 0, grown, 0, fields.length);
+			fields = grown;
+		}
+		if (fields[i] == null) {
+			fields[i] = new Field(i);
+		}
+		return fields[i];
+	}
+
+	public String getString(int i) {
+		return getField(i).toString();
+	}
+
+	/**
+	 * @return a copy of the current row
+	 */
+	public String[] getRow() {
+		final String[] r = new String[fieldCount];
+		int start = 0;
+		for (int i = 0; i < fieldCount; ++i) {
+			r[i] = new String(row, start, fieldEnds[i] - start);
+			start = fieldEnds[i];
+		}
+		return r;
+	}
+
+	/**
+	 * Read every remaining row, stopping early if the handler returns false
+	 *
+	 * @param handler called for each row
+	 * @throws IOException
+	 */
+	public void forEach(RowHandler handler) throws IOException {
+		while (next()) {
+			if (!handler.row(this)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return copies of every remaining row
+	 * @throws IOException
+	 */
+	public List<String[]> readAll() throws IOException {
+		final List<String[]> ret = new ArrayList<String[]>();
+		while (next()) {
+			ret.add(getRow());
+		}
+		return ret;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (in != null) {
+			in.close();
+		}
+	}
+
+	/**
+	 * View of one field in the row buffer
+	 */
+	protected final class Field implements CharSequence {
+
+		final int index;
+
+		Field(int index) {
+			this.index = index;
+		}
+
+		int start() {
+			return index == 0 ? 0 : fieldEnds[index - 1];
+		}
+
+		@Override
+		public int length() {
+			return fieldEnds[index] - start();
+		}
+
+		@Override
+		public char charAt(int i) {
+			if (i < 0 || i >= length()) {
+				throw new IndexOutOfBoundsException(String.valueOf(i));
+			}
+			return row[start() + i];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			if (start < 0 || end > length() || start > end) {
+				throw new IndexOutOfBoundsException(start + ", " + end);
+			}
+			return new String(row, start() + start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			final int s = start();
+			return new String(row, s, fieldEnds[index] - s);
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright (C) 2014 Jacob Scott <jascottytechie@gmail.com>
+ * Description: Tests several candidate charsets against the same bytes in a
+ * single pass
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.jascotty2.libv3_2.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Bytes are given a block at a time, and each block is run through a decoder
+ * for every candidate that has not failed yet, while it is still in cache.
+ * <br />
+ * A character split across two blocks is not an error: whatever a decoder
+ * could not finish is kept and decoded with the start of the next block. Only
+ * {@link #finish()} treats an unfinished character as malformed.
+ */
+public class CharsetDetector {
+
+	/**
+	 * bytes decoded at a time
+	 */
+	public static final int BLOCK_SIZE = 8192;
+	/**
+	 * most bytes a decoder may leave unfinished at the end of a block;
+	 * a candidate that needs more is counted as failed
+	 */
+	protected static final int CARRY = 16;
+	protected final Charset[] candidates;
+	protected final CharsetDecoder[] decoders;
+	/**
+	 * bytes each decoder left unfinished, or -1 once it has failed
+	 */
+	protected final int[] pending;
+	protected int alive;
+	/**
+	 * the last CARRY bytes of the previous block, then the current block
+	 */
+	protected final ByteBuffer buf = ByteBuffer.allocate(CARRY + BLOCK_SIZE);
+	// decoded characters are only checked, never kept
+	private final CharBuffer scratch = CharBuffer.allocate(BLOCK_SIZE);
+	protected boolean finished = false;
+
+	/**
+	 * @param charsets charset names, most preferred first
+	 * @throws java.nio.charset.UnsupportedCharsetException
+	 */
+	public CharsetDetector(String[] charsets) {
+		this(forNames(charsets));
+	}
+
+	/**
+	 * @param charsets candidates, most preferred first
+	 */
+	public CharsetDetector(Charset... charsets) {
+		candidates = charsets.clone();
+		decoders = new CharsetDecoder[charsets.length];
+		pending = new int[charsets.length];
+		for (int i = 0; i < charsets.length; ++i) {
+			decoders[i] = charsets[i].newDecoder()
+					.onMalformedInput(CodingErrorAction.REPORT)
+					.onUnmappableCharacter(CodingErrorAction.REPORT);
+		}
+		alive = charsets.length;
+		buf.position(CARRY);
+	}
+
+	private static Charset[] forNames(String[] names) {
+		final Charset[] c = new Charset[names.length];
+		for (int i = 0; i < names.length; ++i) {
+			c[i] = Charset.forName(names[i]);
+		}
+		return c;
+	}
+
+	/**
+	 * @return false once every candidate has failed, so there is no point
+	 * reading any more
+	 */
+	public boolean isAlive() {
+		return alive > 0;
+	}
+
+	/**
+	 * Check more bytes
+	 *
+	 * @param data bytes
+	 * @param off start
+	 * @param len number of bytes
+	 */
+	public void update(byte[] data, int off, int len) {
+		if (finished) {
+			throw new IllegalStateException("already finished");
+		}
+		while (len > 0 && alive > 0) {
+			final int n = Math.min(len, buf.remaining());
+			buf.put(data, off, n);
+			off += n;
+			len -= n;
+			if (!buf.hasRemaining()) {
+				decodeBlock(false);
+			}
+		}
+	}
+
+	/**
+	 * Check everything left in a stream. The stream is not closed.
+	 *
+	 * @param in source
+	 * @param maxBytes stop after this many bytes, or -1 to read to the end. Any
+	 * limit works, not just multiples of {@link #BLOCK_SIZE}: see
+	 * {@link #getCharset()}
+	 * @throws IOException
+	 */
+	public void update(InputStream in, long maxBytes) throws IOException {
+		long left = maxBytes < 0 ? Long.MAX_VALUE : maxBytes;
+		final byte[] b = buf.array();
+		while (left > 0 && alive > 0) {
+			// read straight into the block
+			final int n = in.read(b, buf.position(), (int) Math.min(left, buf.remaining()));
+			if (n == -1) {
+				break;
+			}
+			buf.position(buf.position() + n);
+			left -= n;
+			if (!buf.hasRemaining()) {
+				decodeBlock(false);
+			}
+		}
+	}
+
+	/**
+	 * End of the input: anything still unfinished is malformed
+	 *
+	 * @return the first candidate that decodes everything given, or null
+	 */
+	public Charset finish() {
+		if (!finished) {
+			finished = true;
+			decodeBlock(true);
+			for (int i = 0; i < decoders.length; ++i) {
+				if (pending[i] == 0) {
+					scratch.clear();
+					if (decoders[i].flush(scratch).isError()) {
+						fail(i);
+					}
+				}
+			}
+		}
+		return getCharset();
+	}
+
+	/**
+	 * For input read only partway, such as up to a byte limit: a character
+	 * cut off at the end of what was given is not an error
+	 *
+	 * @return the first candidate that has not failed on anything given so
+	 * far, or null
+	 */
+	public Charset getCharset() {
+		if (!finished && buf.position() > CARRY && alive > 0) {
+			// the last, partial block
+			decodeBlock(false);
+		}
+		for (int i = 0; i < candidates.length; ++i) {
+			if (pending[i] >= 0) {
+				return candidates[i];
+			}
+		}
+		return null;
+	}
+
+	private void fail(int i) {
+		if (pending[i] >= 0) {
+			pending[i] = -1;
+			--alive;
+		}
+	}
+
+	/**
+	 * Run every live decoder over the current block, each starting with the
+	 * bytes it left unfinished last time, then keep the tail for the next
+	 */
+	protected void decodeBlock(boolean endOfInput) {
+		final int end = buf.position();
+		for (int i = 0; i < decoders.length; ++i) {
+			if (pending[i] < 0) {
+				continue;
+			}
+			final ByteBuffer in = buf.duplicate();
+			in.limit(end).position(CARRY - pending[i]);
+			while (true) {
+				scratch.clear();
+				final CoderResult r = decoders[i].decode(in, scratch, endOfInput);
+				if (r.isError()) {
+					fail(i);
+					break;
+				} else if (r.isUnderflow()) {
+					if (in.remaining() > CARRY) {
+						fail(i);
+					} else {
+						pending[i] = in.remaining();
+					}
+					break;
+				}
+				// output full: carry on
+			}
+		}
+		// keep the end of this block in front of the next
+		final byte[] b = buf.array();
+		System.arraycopy(b, end - CARRY, b, 0, CARRY);
+		buf.clear();
+		buf.position(CARRY);
+	}
+}
@@ -0,0 +1,335 @@
+/**
+ * Copyright (C) 2014 Jacob Scott <jascottytechie@gmail.com>
+ * Description: Keeps a file open for appending, and writes batches of
+ * appended text from a background thread
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.jascotty2.libv3_2.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Text is encoded as UTF-8 into a ring buffer and the caller returns at
+ * once. A writer thread empties the buffer into the file when it is half
+ * full, when the oldest text in it has waited <code>flushMillis</code>, or
+ * when {@link #flush()} is called. <br />
+ * An append that does not fit waits for the writer, so a burst of appends
+ * never needs more memory than the buffer. Each append reaches the file
+ * whole and in order, even with several threads appending. <br />
+ * A write error is kept and thrown from the next append, flush or close.
+ */
+public class FileAppender implements Closeable, Flushable {
+
+	/**
+	 * When the file is forced to disk
+	 */
+	public static enum SYNC {
+
+		/**
+		 * leave it to the operating system
+		 */
+		NEVER,
+		/**
+		 * on {@link #flush()} and {@link #close()}
+		 */
+		ON_FLUSH,
+		/**
+		 * after every batch the writer thread writes
+		 */
+		ALWAYS
+	}
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+	public static final long DEFAULT_FLUSH_MILLIS = 1000;
+	protected final File file;
+	protected final FileChannel ch;
+	protected final SYNC sync;
+	protected final byte[] ring;
+	protected final long flushNanos;
+	// everything below is guarded by lock
+	protected final Object lock = new Object();
+	/**
+	 * bytes accepted and bytes written since opening; the ring holds the
+	 * difference, starting at written % ring.length
+	 */
+	protected long appended = 0, written = 0;
+	/**
+	 * when the oldest unwritten byte was appended
+	 */
+	protected long pendingSince = 0;
+	/**
+	 * write everything up to here now
+	 */
+	protected long barrier = 0;
+	protected boolean closing = false;
+	protected IOException error = null;
+	/**
+	 * serializes appends, so a record that waits for space is not split by
+	 * another thread's record
+	 */
+	private final Object appendLock = new Object();
+	private final Thread writer;
+
+	/**
+	 * Open a file for appending, with the default buffer and interval and no
+	 * forced syncs
+	 *
+	 * @param file file to append to, created with its folder if needed
+	 * @throws IOException
+	 */
+	public FileAppender(File file) throws IOException {
+		this(file, DEFAULT_BUFFER_SIZE, DEFAULT_FLUSH_MILLIS, SYNC.NEVER);
+	}
+
+	/**
+	 * Open a file for appending
+	 *
+	 * @param file file to append to, created with its folder if needed
+	 * @param bufferSize size of the ring buffer, in bytes
+	 * @param flushMillis longest that appended text waits to be written
+	 * @param sync when to force the file to disk
+	 * @throws IOException
+	 */
+	public FileAppender(File file, int bufferSize, long flushMillis, SYNC sync) throws IOException {
+		if (bufferSize <= 0 || flushMillis <= 0) {
+			throw new IllegalArgumentException("bufferSize and flushMillis must be positive");
+		}
+		this.file = file;
+		final File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.exists()) {
+			dir.mkdirs();
+		}
+		ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		this.sync = sync;
+		ring = new byte[bufferSize];
+		flushNanos = flushMillis * 1000000;
+		writer = new Thread("FileAppender " + file.getName()) {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		};
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Queue text to be written
+	 *
+	 * @param text text to add to the file
+	 * @throws IOException if the appender is closed or an earlier write failed
+	 */
+	public void append(CharSequence text) throws IOException {
+		final byte[] data = text.toString().getBytes(StandardCharsets.UTF_8);
+		synchronized (appendLock) {
+			synchronized (lock) {
+				int off = 0;
+				while (off < data.length) {
+					check();
+					final int free = ring.length - (int) (appended - written);
+					if (free == 0) {
+						// full: the writer is already going, since it starts at half
+						await();
+						continue;
+					}
+					if (appended == written) {
+						pendingSince = System.nanoTime();
+						// the writer waits without a timeout while empty: start its timer
+						lock.notifyAll();
+					}
+					final int n = Math.min(free, data.length - off);
+					final int at = (int) (appended % ring.length);
+					final int first = Math.min(n, ring.length - at);
+					System.arraycopy(data, off, ring, at, first);
+					System.arraycopy(data, off + first, ring, 0, n - first);
+					off += n;
+					appended += n;
+					if (appended - written >= ring.length / 2) {
+						lock.notifyAll();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Queue a line of text to be written
+	 *
+	 * @param line text, without the line break
+	 * @throws IOException if the appender is closed or an earlier write failed
+	 */
+	public void appendLine(CharSequence line) throws IOException {
+		append(line + "\n");
+	}
+
+	/**
+	 * Barrier: wait until everything appended before this call is in the
+	 * file, and forced to disk unless the policy is {@link SYNC#NEVER}
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public void flush() throws IOException {
+		synchronized (lock) {
+			check();
+			final long target = appended;
+			if (barrier < target) {
+				barrier = target;
+				lock.notifyAll();
+			}
+			while (written < target) {
+				if (error != null) {
+					throw error;
+				}
+				await();
+			}
+		}
+		if (sync != SYNC.NEVER) {
+			ch.force(false);
+		}
+	}
+
+	/**
+	 * Write everything still buffered, stop the writer thread and close the
+	 * file. Does nothing if already closed.
+	 *
+	 * @throws IOException if anything could not be written
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (appendLock) {
+			synchronized (lock) {
+				if (closing) {
+					return;
+				}
+				closing = true;
+				lock.notifyAll();
+			}
+			try {
+				writer.join();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			try {
+				synchronized (lock) {
+					if (error != null) {
+						throw error;
+					} else if (written < appended) {
+						throw new InterruptedIOException("Interrupted closing " + file.getPath());
+					}
+				}
+				if (sync != SYNC.NEVER) {
+					ch.force(false);
+				}
+			} finally {
+				ch.close();
+			}
+		}
+	}
+
+	/**
+	 * must hold lock
+	 */
+	private void check() throws IOException {
+		if (error != null) {
+			throw error;
+		} else if (closing) {
+			throw new IOException(file.getPath() + " is closed");
+		}
+	}
+
+	/**
+	 * must hold lock
+	 */
+	private void await() throws IOException {
+		try {
+			lock.wait();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	protected void writeLoop() {
+		final ByteBuffer[] parts = new ByteBuffer[2];
+		try {
+			while (true) {
+				final long start;
+				final int len;
+				synchronized (lock) {
+					while (true) {
+						final long pending = appended - written;
+						if (pending == 0) {
+							if (closing) {
+								return;
+							}
+							lock.wait();
+							continue;
+						}
+						final long waited = System.nanoTime() - pendingSince;
+						if (closing || barrier > written || pending >= ring.length / 2 || waited >= flushNanos) {
+							break;
+						}
+						lock.wait(Math.max(1, (flushNanos - waited) / 1000000));
+					}
+					start = written;
+					len = (int) (appended - written);
+				}
+				// the appenders never write over unwritten bytes, so the ring
+				// can be read without the lock
+				final int at = (int) (start % ring.length);
+				final int first = Math.min(len, ring.length - at);
+				parts[0] = ByteBuffer.wrap(ring, at, first);
+				parts[1] = ByteBuffer.wrap(ring, 0, len - first);
+				while (parts[0].hasRemaining() || parts[1].hasRemaining()) {
+					ch.write(parts);
+				}
+				if (sync == SYNC.ALWAYS) {
+					ch.force(false);
+				}
+				synchronized (lock) {
+					written += len;
+					if (appended > written) {
+						// close enough: the rest came in while writing
+						pendingSince = System.nanoTime();
+					}
+					lock.notifyAll();
+				}
+			}
+		} catch (IOException ex) {
+			synchronized (lock) {
+				error = ex;
+				lock.notifyAll();
+			}
+		} catch (InterruptedException ex) {
+			synchronized (lock) {
+				error = new InterruptedIOException("Writer for " + file.getPath() + " interrupted");
+				lock.notifyAll();
+			}
+		}
+	}
+}
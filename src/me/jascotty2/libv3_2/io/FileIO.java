@@ -17,7 +17,6 @@
  */
 package me.jascotty2.libv3_2.io;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -29,6 +28,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.URI;
@@ -37,22 +37,40 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLDecoder;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
-import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
 
 public class FileIO {
 
@@ -61,6 +79,50 @@ public class FileIO {
 	 */
 	protected final static char nullQuo = (char) 65533;
 	//protected final static String nullQuo = String.valueOf((char) 226) + (char) 128 + String.valueOf((char) 156);
+	/**
+	 * buffer size used by each side of filesEqual
+	 */
+	protected final static int COMPARE_BUFFER_SIZE = 1024 * 1024;
+	/**
+	 * most idle compare buffers kept: any more that are in use at once are
+	 * left to the garbage collector when returned
+	 */
+	protected final static int COMPARE_POOL_MAX = 4;
+	/**
+	 * idle compare buffers, shared by every thread
+	 */
+	private final static ArrayDeque<ByteBuffer> comparePool = new ArrayDeque<ByteBuffer>();
+	/**
+	 * most files kept in the CRC cache; the least recently used go first
+	 */
+	protected final static int CRC_CACHE_MAX = 4096;
+	/**
+	 * canonical path -&gt; {length, last modified, crc}
+	 */
+	private final static LinkedHashMap<String, long[]> crcCache = new LinkedHashMap<String, long[]>(64, .75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+			return size() > CRC_CACHE_MAX;
+		}
+	};
+	/**
+	 * largest amount asked of a single channel transfer by copyFile
+	 */
+	protected final static long TRANSFER_CHUNK = 64L * 1024 * 1024;
+	/**
+	 * files copied at once by moveFile and copyTree
+	 */
+	public final static int DEFAULT_COPY_THREADS = 4;
+	/**
+	 * bytes read at a time by tailLines
+	 */
+	protected final static int TAIL_BLOCK_SIZE = 8192;
+	/**
+	 * absolute jar path -&gt; its class files
+	 */
+	private final static HashMap<String, JarIndex> jarIndexes = new HashMap<String, JarIndex>();
 	/**
 	 * recognized delimeters
 	 */
@@ -74,159 +136,50 @@ public class FileIO {
 	};
 
 	public static List<String[]> loadCSVFile(File toLoad) throws FileNotFoundException, IOException {
-		List<String[]> ret = new LinkedList<String[]>();
 		if (toLoad.exists() && toLoad.isFile() && toLoad.canRead()) {
-			char delim = getDelim(toLoad);
-			String line;
-			//FileReader fstream = new FileReader(toLoad.getAbsolutePath());
-			//BufferedReader in = new BufferedReader(fstream);
-			FileInputStream fstream = new FileInputStream(toLoad.getAbsolutePath());
-			InputStreamReader inr = new InputStreamReader(fstream, "UTF8");
-			BufferedReader in = new BufferedReader(inr);
-			
+			CSVReader in = new CSVReader(toLoad);
 			try {
-				if (delim == 0) {
-					while ((line = in.readLine()) != null) {
-						ret.add(new String[]{line});
-					}
-				} else {
-					boolean inStr = false;
-					ArrayList<String> fields = new ArrayList<String>();
-					StringBuilder temp = new StringBuilder();
-					while ((line = in.readLine()) != null) {
-						if(inStr) {
-							temp.append("\n");
-						} else if(!ret.isEmpty() || fields.size() > 0) {
-							// terminating a line
-							fields.add(temp.toString());
-							temp.delete(0, Integer.MAX_VALUE);
-							ret.add(fields.toArray(new String[fields.size()]));
-							fields.clear();
-						}
-						char lastChar = 0;
-						for(char c : line.toCharArray()) {
-							if(c == '"') {
-								inStr = !inStr;
-								if(lastChar == '"') {
-									// double-quote is a quoted quote
-									temp.append('"');
-								}
-							} else if(!inStr && c == delim) {
-								// terminating a field
-								fields.add(temp.toString());
-								temp.delete(0, Integer.MAX_VALUE);
-							} else {
-								if (c == nullQuo) {
-									temp.append('"');
-								} else {
-									temp.append(c);
-								}
-							}
-							lastChar = c;
-						}
-					}
-					if(temp.length() > 0) {
-						fields.add(temp.toString());
-					}
-					if(!fields.isEmpty()) {
-						ret.add(fields.toArray(new String[fields.size()]));
-					}
-						
-						/*
-						if (line.contains("\"")) {
-							// need to parse the strings..
-							ArrayList<String> fields = new ArrayList<String>();
-							boolean inStr = false;
-							int start = 0;
-							char c;
-							for (int i = 0; i < line.length() && (c = line.charAt(i)) != 0; ++i) {
-								if (c == '"') {
-									inStr = !inStr;
-								} else if (!inStr && c == delim) {
-									String field = line.substring(start, i);
-									if (!field.isEmpty() && field.charAt(0) == '"') {
-										field = field.substring(1, field.length() - 1);
-									}
-									fields.add(field.replace("\"\"", "\"").replace(nullQuo, '"'));
-									start = i + 1;
-								}
-							}
-							if (start < line.length()) {
-								String field = line.substring(start, line.length());
-								if (!field.isEmpty() && field.charAt(0) == '"') {
-									field = field.substring(1);
-								}
-								// just in case is missing the terminating quote
-								if (!field.isEmpty() && field.charAt(field.length() - 1) == '"') {
-									field = field.substring(0, field.length() - 1);
-								}
-								fields.add(field.replace("\"\"", "\"").replace(nullQuo, '"'));
-							}
-							ret.add(fields.toArray(new String[0]));
-						/*
-						if (line.contains("\"")) {
-							// need to parse the strings..
-							ArrayList<String> fields = new ArrayList<String>();
-							boolean inStr = false;
-							int start = 0;
-							char c;
-							for (int i = 0; i < line.length() && (c = line.charAt(i)) != 0; ++i) {
-								if (c == '"') {
-									inStr = !inStr;
-								} else if (!inStr && c == delim) {
-									String field = line.substring(start, i);
-									if (!field.isEmpty() && field.charAt(0) == '"') {
-										field = field.substring(1, field.length() - 1);
-									}
-									fields.add(field.replace("\"\"", "\"").replace(nullQuo, '"'));
-									start = i + 1;
-								}
-							}
-							if (start < line.length()) {
-								String field = line.substring(start, line.length());
-								if (!field.isEmpty() && field.charAt(0) == '"') {
-									field = field.substring(1);
-								}
-								// just in case is missing the terminating quote
-								if (!field.isEmpty() && field.charAt(field.length() - 1) == '"') {
-									field = field.substring(0, field.length() - 1);
-								}
-								fields.add(field.replace("\"\"", "\"").replace(nullQuo, '"'));
-							}
-							ret.add(fields.toArray(new String[0]));
-						} else {
-							// simple substitution :)
-							ret.add(line.replace(nullQuo, '"').split(String.valueOf(delim)));
-						} */
-				}
+				return in.readAll();
 			} finally {
 				in.close();
-				fstream.close();
 			}
 		}
-		return ret;
+		return new ArrayList<String[]>();
+	}
+
+	/**
+	 * Load a large csv file, parsing ranges of it in parallel on the common
+	 * fork-join pool. <br />
+	 * The rows are the same as {@link #loadCSVFile(File)} gives; small files
+	 * are just read serially.
+	 *
+	 * @param toLoad file to read
+	 * @return every row
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	public static List<String[]> loadCSVFileParallel(File toLoad) throws FileNotFoundException, IOException {
+		if (toLoad.exists() && toLoad.isFile() && toLoad.canRead()) {
+			return ParallelCSVReader.readAll(toLoad);
+		}
+		return new ArrayList<String[]>();
 	}
 
-	private static char getDelim(File toLoad) throws IOException {
-		FileReader fstream = new FileReader(toLoad);
-		int inC;
-		char delim = 0;
+	/**
+	 * Stream a csv file one row at a time, without keeping the rows
+	 *
+	 * @param toLoad file to read
+	 * @param handler called for each row; return false to stop
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	public static void loadCSVFile(File toLoad, CSVReader.RowHandler handler) throws FileNotFoundException, IOException {
+		CSVReader in = new CSVReader(toLoad);
 		try {
-			boolean inStr = false;
-			while ((inC = fstream.read()) != -1) {
-				if (((char) inC) == '"') {
-					inStr = !inStr;
-				} else if (!inStr && delimeters.contains((Character) (char) inC)) {
-					delim = (char) inC;
-					break;
-				}
-			}
-			fstream.close();
-		} catch (IOException e) {
-			fstream.close();
-			throw (e);
+			in.forEach(handler);
+		} finally {
+			in.close();
 		}
-		return delim;
 	}
 
 	public static List<String> loadFile(File toLoad) throws FileNotFoundException, IOException {
@@ -380,6 +333,86 @@ public class FileIO {
 		return s.toString();
 	}
 	
+	/**
+	 * Stream the lines of a UTF-8 file without loading it. <br />
+	 * The stream must be closed, and each line is only valid until the next
+	 * one is read (see {@link LineReader}).
+	 *
+	 * @param toLoad file to read
+	 * @return lazy stream of lines
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	public static Stream<CharSequence> lines(File toLoad) throws FileNotFoundException, IOException {
+		return new LineReader(toLoad).stream();
+	}
+
+	/**
+	 * Read the last lines of a UTF-8 file, in the same form as
+	 * {@link #headLines}. <br />
+	 * The file is scanned backwards from the end a block at a time, so only
+	 * as much as is returned (rounded up to a block) is ever read.
+	 *
+	 * @param toLoad file to read
+	 * @param lines number of lines
+	 * @return the lines, each followed by "\n"
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	public static String tailLines(File toLoad, int lines) throws FileNotFoundException, IOException {
+		if (lines <= 0 || toLoad == null || !toLoad.exists() || !toLoad.isFile() || !toLoad.canRead()) {
+			return "";
+		}
+		final FileInputStream fstream = new FileInputStream(toLoad);
+		try {
+			final FileChannel ch = fstream.getChannel();
+			final long size = ch.size();
+			final ByteBuffer block = ByteBuffer.allocate(TAIL_BLOCK_SIZE);
+			// '\n' and '\r' are never part of a multi-byte character in UTF-8,
+			// so breaks can be found without decoding
+			long start = 0;
+			int found = 0, after = -1;
+			find:
+			for (long blockEnd = size; blockEnd > 0;) {
+				final int n = (int) Math.min(TAIL_BLOCK_SIZE, blockEnd);
+				final long blockStart = blockEnd - n;
+				block.clear().limit(n);
+				while (block.hasRemaining() && ch.read(block, blockStart + block.position()) != -1) {
+				}
+				for (int i = n - 1; i >= 0; --i) {
+					final int b = block.get(i);
+					// a break at the very end does not start another line
+					if ((b == '\n' || (b == '\r' && after != '\n')) && blockStart + i + 1 < size
+							&& ++found == lines) {
+						start = blockStart + i + 1;
+						break find;
+					}
+					after = b;
+				}
+				blockEnd = blockStart;
+			}
+			if (size - start > Integer.MAX_VALUE) {
+				throw new IOException("Too much to return from " + toLoad.getPath());
+			}
+			final ByteBuffer text = ByteBuffer.allocate((int) (size - start));
+			while (text.hasRemaining() && ch.read(text, start + text.position()) != -1) {
+			}
+			text.flip();
+			// let LineReader normalize the breaks (and drop a BOM at the start)
+			final LineReader in = new LineReader(new java.io.StringReader(StandardCharsets.UTF_8.decode(text).toString()));
+			if (start > 0) {
+				in.first = false;
+			}
+			final StringBuilder s = new StringBuilder(text.limit() + lines);
+			while (in.next()) {
+				s.append(in.getLine()).append("\n");
+			}
+			return s.toString();
+		} finally {
+			fstream.close();
+		}
+	}
+
 	public static void saveFile(File toSave, String data) throws IOException {
 		if (toSave == null || data == null) {
 			return;
@@ -397,6 +430,14 @@ public class FileIO {
 		fstream.close();
 	}
 
+	/**
+	 * Append to a file, opening and closing it. <br />
+	 * For anything appended often, keep a {@link FileAppender} open instead.
+	 *
+	 * @param toSave file to append to
+	 * @param data text to add
+	 * @throws IOException
+	 */
 	public static void saveAppendFile(File toSave, String data) throws IOException {
 		if (!toSave.exists()) {
 			// first check if directory exists, then create the file
@@ -481,7 +522,7 @@ public class FileIO {
 				continue;
 			}
 			for (int i = 0; i < line.length; ++i) {
-				boolean str = line[i].contains("\"");
+				boolean str = line[i].contains("\"") || line[i].indexOf('\n') != -1 || line[i].indexOf('\r') != -1;
 				if (!str) {
 					for (Character c : delimeters) {
 						if (line[i].contains(String.valueOf(c))) {
@@ -544,13 +585,35 @@ public class FileIO {
 		return "";
 	}
 
+	/**
+	 * Called by {@link #copyTree} as each file is finished, always on the
+	 * thread that called copyTree
+	 */
+	public static interface ProgressListener {
+
+		/**
+		 * @param file the file just copied
+		 * @param filesDone files copied so far
+		 * @param filesTotal files to copy
+		 * @param bytesDone bytes copied so far
+		 * @param bytesTotal bytes to copy
+		 */
+		void progress(File file, int filesDone, int filesTotal, long bytesDone, long bytesTotal);
+	}
+
+	/**
+	 * Copy a file, creating the parent folders of the destination if needed.
+	 * <br /> A single channel transfer may copy less than asked for, so this
+	 * keeps transferring until the whole file is written.
+	 *
+	 * @param sourceFile file to copy
+	 * @param destFile file to write, replaced if it exists
+	 * @throws IOException if the source could not be read in full
+	 */
 	public static void copyFile(File sourceFile, File destFile) throws IOException {
-		if (!destFile.exists()) {
-			File d = destFile.getParentFile();
-			if(!d.exists()) {
-				d.mkdirs();
-			}
-			destFile.createNewFile();
+		File d = destFile.getAbsoluteFile().getParentFile();
+		if (d != null && !d.exists()) {
+			d.mkdirs();
 		}
 
 		FileChannel source = null;
@@ -559,7 +622,15 @@ public class FileIO {
 		try {
 			source = new FileInputStream(sourceFile).getChannel();
 			destination = new FileOutputStream(destFile).getChannel();
-			destination.transferFrom(source, 0, source.size());
+			final long size = source.size();
+			long pos = 0;
+			while (pos < size) {
+				final long n = destination.transferFrom(source, pos, Math.min(TRANSFER_CHUNK, size - pos));
+				if (n <= 0) {
+					throw new IOException(sourceFile.getPath() + " ended at " + pos + " of " + size + " bytes");
+				}
+				pos += n;
+			}
 		} finally {
 			if (source != null) {
 				source.close();
@@ -570,56 +641,261 @@ public class FileIO {
 		}
 	}
 
+	/**
+	 * Move a file or folder. <br />
+	 * Failures are ignored; use {@link #moveFile(File, File)} to see them.
+	 *
+	 * @param source file or folder to move
+	 * @param dest new location
+	 * @throws SecurityException
+	 */
 	public static void move(File source, File dest) throws SecurityException {
-		if(source.isFile()) {
-			if(dest.exists()) {
-				dest.delete();
+		try {
+			moveFile(source, dest);
+		} catch (IOException ex) {
+		}
+	}
+
+	/**
+	 * Move a file or folder. <br />
+	 * A file replaces an existing file at dest. A folder moved onto an
+	 * existing folder is merged into it, replacing files with the same name.
+	 * <br />
+	 * Where possible this is a single atomic rename. If source and dest are
+	 * not on the same file system, a file is copied and then deleted, and a
+	 * folder is copied with {@link #copyTree} and then deleted.
+	 *
+	 * @param source file or folder to move
+	 * @param dest new location
+	 * @throws IOException
+	 */
+	public static void moveFile(File source, File dest) throws IOException {
+		if (!source.exists()) {
+			throw new FileNotFoundException(source.getPath());
+		}
+		File d = dest.getAbsoluteFile().getParentFile();
+		if (d != null && !d.exists()) {
+			d.mkdirs();
+		}
+		if (source.isDirectory() && dest.isDirectory()) {
+			// merge
+			final File[] files = source.listFiles();
+			if (files == null) {
+				throw new IOException("Could not list " + source.getPath());
+			}
+			for (File f : files) {
+				moveFile(f, new File(dest, f.getName()));
 			}
-			source.renameTo(dest);
+			Files.delete(source.toPath());
+			return;
+		}
+		if (source.isDirectory() && dest.isFile()) {
+			Files.delete(dest.toPath());
+		}
+		final Path from = source.toPath(), to = dest.toPath();
+		try {
+			if (source.isFile() && dest.isFile()) {
+				// an atomic rename over an existing file is not allowed everywhere
+				Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} else {
+				Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+			}
+			return;
+		} catch (AtomicMoveNotSupportedException ex) {
+			// different file system
+		} catch (FileAlreadyExistsException ex) {
+			// replacing is not atomic here
+		}
+		if (source.isFile()) {
+			// copies then deletes if it has to
+			Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
 		} else {
-			// dest is assumed a folder
-			if(dest.exists() && !dest.isDirectory()) {
-				dest.delete();
+			copyTree(source, dest, DEFAULT_COPY_THREADS, null);
+			deleteTree(source);
+		}
+	}
+
+	/**
+	 * Copy a folder and everything in it, using up to
+	 * {@link #DEFAULT_COPY_THREADS} threads
+	 *
+	 * @param source folder to copy
+	 * @param dest folder to copy into, created if needed
+	 * @param listener told as each file is copied, or null
+	 * @throws IOException
+	 */
+	public static void copyTree(File source, File dest, ProgressListener listener) throws IOException {
+		copyTree(source, dest, DEFAULT_COPY_THREADS, listener);
+	}
+
+	/**
+	 * Copy a folder and everything in it. <br />
+	 * Folders are created first, then the files are copied on a pool of at
+	 * most <code>threads</code> workers. If any copy fails, the rest are
+	 * cancelled and the first error is thrown.
+	 *
+	 * @param source folder to copy (a single file is copied as-is)
+	 * @param dest folder to copy into, created if needed
+	 * @param threads most files to copy at once
+	 * @param listener told as each file is copied, or null
+	 * @throws IOException
+	 */
+	public static void copyTree(File source, File dest, int threads, ProgressListener listener) throws IOException {
+		final List<File[]> files = new ArrayList<File[]>();
+		final long bytesTotal = listTree(source, dest, files);
+		final int filesTotal = files.size();
+		long bytesDone = 0;
+		int filesDone = 0;
+		if (threads <= 1 || filesTotal <= 1) {
+			for (File[] f : files) {
+				copyFile(f[0], f[1]);
+				bytesDone += f[0].length();
+				if (listener != null) {
+					listener.progress(f[1], ++filesDone, filesTotal, bytesDone, bytesTotal);
+				}
 			}
-			if(!dest.exists()) {
-				dest.mkdirs();
+			return;
+		}
+		final ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, filesTotal), new ThreadFactory() {
+			int count = 0;
+
+			@Override
+			public synchronized Thread newThread(Runnable r) {
+				final Thread t = new Thread(r, "FileIO copy " + ++count);
+				t.setDaemon(true);
+				return t;
 			}
-			for(File f : source.listFiles()) {
-				File d = new File(dest, f.getName());
-				if(f.isDirectory()) {
-					move(f, d);
-				} else {
-					if(d.exists()) {
-						d.delete();
+		});
+		try {
+			final CompletionService<File[]> done = new ExecutorCompletionService<File[]>(pool);
+			for (final File[] f : files) {
+				done.submit(new Callable<File[]>() {
+					@Override
+					public File[] call() throws IOException {
+						copyFile(f[0], f[1]);
+						return f;
 					}
-					f.renameTo(d);
+				});
+			}
+			while (filesDone < filesTotal) {
+				final File[] f;
+				try {
+					f = done.take().get();
+				} catch (ExecutionException ex) {
+					if (ex.getCause() instanceof IOException) {
+						throw (IOException) ex.getCause();
+					}
+					throw new IOException(ex.getCause());
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted copying " + source.getPath());
+				}
+				bytesDone += f[0].length();
+				++filesDone;
+				if (listener != null) {
+					listener.progress(f[1], filesDone, filesTotal, bytesDone, bytesTotal);
 				}
 			}
-			source.delete();
+		} finally {
+			pool.shutdownNow();
 		}
 	}
-	
+
+	/**
+	 * Create the folders of a tree under dest, and list the files to copy
+	 *
+	 * @return total size of the files
+	 */
+	private static long listTree(File source, File dest, List<File[]> files) throws IOException {
+		if (source.isFile()) {
+			files.add(new File[]{source, dest});
+			return source.length();
+		}
+		final File[] children = source.listFiles();
+		if (children == null) {
+			throw new FileNotFoundException(source.getPath());
+		}
+		if (!dest.isDirectory() && !dest.mkdirs()) {
+			throw new IOException("Could not create " + dest.getPath());
+		}
+		long size = 0;
+		for (File f : children) {
+			size += listTree(f, new File(dest, f.getName()), files);
+		}
+		return size;
+	}
+
+	private static void deleteTree(File f) throws IOException {
+		if (f.isDirectory()) {
+			final File[] children = f.listFiles();
+			if (children != null) {
+				for (File c : children) {
+					deleteTree(c);
+				}
+			}
+		}
+		Files.deleteIfExists(f.toPath());
+	}
+
 	public static boolean filesEqual(File f1, File f2) throws IOException {
+		return filesEqual(f1, f2, false);
+	}
+
+	/**
+	 * Compare the contents of two files. <br />
+	 * Files of different sizes are never opened. With <code>useCRC</code>,
+	 * files that both have a cached CRC that differs are not read either, and
+	 * files found to be equal have their CRC cached. A matching CRC is not
+	 * trusted on its own: the contents are still compared.
+	 *
+	 * @param f1 first file
+	 * @param f2 second file
+	 * @param useCRC whether to use and fill the CRC cache
+	 * @return true if both files hold the same bytes
+	 * @throws IOException
+	 */
+	public static boolean filesEqual(File f1, File f2, boolean useCRC) throws IOException {
+		if (!f1.isFile()) {
+			throw new FileNotFoundException(f1.getPath());
+		} else if (!f2.isFile()) {
+			throw new FileNotFoundException(f2.getPath());
+		}
+		final long length = f1.length();
+		if (length != f2.length()) {
+			return false;
+		} else if (f1.getCanonicalFile().equals(f2.getCanonicalFile())) {
+			return true;
+		}
+		if (useCRC) {
+			final Long c1 = getCachedCRC(f1), c2 = getCachedCRC(f2);
+			if (c1 != null && c2 != null && !c1.equals(c2)) {
+				return false;
+			}
+		}
+		final CRC32 crc = useCRC ? new CRC32() : null;
+		final ByteBuffer b1 = takeCompareBuffer(), b2 = takeCompareBuffer();
 		FileInputStream fis1 = null, fis2 = null;
 		try {
 			fis1 = new FileInputStream(f1);
 			fis2 = new FileInputStream(f2);
-			if (f1.length() == f2.length()) {
-				int n = 0;
-				byte[] b1;
-				byte[] b2;
-				while ((n = Math.min(fis1.available(), 2048)) > 0) {
-					b1 = new byte[n];
-					b2 = new byte[n];
-					int res1 = fis1.read(b1);
-					int res2 = fis2.read(b2);
-					if (!Arrays.equals(b1, b2)) {
-						return false;
-					}
+			final FileChannel ch1 = fis1.getChannel(), ch2 = fis2.getChannel();
+			while (true) {
+				final int n1 = readFully(ch1, b1), n2 = readFully(ch2, b2);
+				if (n1 != n2) {
+					// changed while reading
+					return false;
+				} else if (n1 == 0) {
+					break;
+				} else if (!equal(b1, b2, n1)) {
+					return false;
+				}
+				if (crc != null) {
+					crc.update(b1);
 				}
-				return true;
 			}
 		} finally {
+			releaseCompareBuffer(b1);
+			releaseCompareBuffer(b2);
 			if (fis1 != null) {
 				fis1.close();
 			}
@@ -627,12 +903,118 @@ public class FileIO {
 				fis2.close();
 			}
 		}
-		return false;
+		if (crc != null) {
+			final long value = crc.getValue();
+			cacheCRC(f1, value);
+			cacheCRC(f2, value);
+		}
+		return true;
+	}
+
+	/**
+	 * CRC32 of a file's contents, cached by path, length and modification
+	 * time
+	 *
+	 * @param f file to read
+	 * @return crc
+	 * @throws IOException
+	 */
+	public static long getCRC(File f) throws IOException {
+		final Long cached = getCachedCRC(f);
+		if (cached != null) {
+			return cached;
+		}
+		final CRC32 crc = new CRC32();
+		final ByteBuffer b = takeCompareBuffer();
+		try {
+			final FileInputStream in = new FileInputStream(f);
+			try {
+				final FileChannel ch = in.getChannel();
+				while (readFully(ch, b) > 0) {
+					crc.update(b);
+				}
+			} finally {
+				in.close();
+			}
+		} finally {
+			releaseCompareBuffer(b);
+		}
+		cacheCRC(f, crc.getValue());
+		return crc.getValue();
+	}
+
+	private static ByteBuffer takeCompareBuffer() {
+		final ByteBuffer b;
+		synchronized (comparePool) {
+			b = comparePool.poll();
+		}
+		// direct, so channel reads do not go through a temporary copy
+		return b != null ? b : ByteBuffer.allocateDirect(COMPARE_BUFFER_SIZE).order(ByteOrder.nativeOrder());
+	}
+
+	private static void releaseCompareBuffer(ByteBuffer b) {
+		synchronized (comparePool) {
+			if (comparePool.size() < COMPARE_POOL_MAX) {
+				comparePool.push(b);
+			}
+		}
+	}
+
+	private static Long getCachedCRC(File f) throws IOException {
+		final long[] c;
+		synchronized (crcCache) {
+			c = crcCache.get(f.getCanonicalPath());
+		}
+		return c != null && c[0] == f.length() && c[1] == f.lastModified() ? c[2] : null;
+	}
+
+	private static void cacheCRC(File f, long crc) throws IOException {
+		final long[] c = {f.length(), f.lastModified(), crc};
+		synchronized (crcCache) {
+			crcCache.put(f.getCanonicalPath(), c);
+		}
+	}
+
+	/**
+	 * Read until the buffer is full or the file ends
+	 *
+	 * @return bytes read; the buffer is flipped, ready to read them
+	 */
+	private static int readFully(FileChannel ch, ByteBuffer b) throws IOException {
+		b.clear();
+		while (b.hasRemaining() && ch.read(b) != -1) {
+		}
+		b.flip();
+		return b.limit();
+	}
+
+	/**
+	 * Compare a long at a time, then the bytes left over
+	 */
+	private static boolean equal(ByteBuffer b1, ByteBuffer b2, int n) {
+		int i = 0;
+		for (final int longs = n & ~7; i < longs; i += 8) {
+			if (b1.getLong(i) != b2.getLong(i)) {
+				return false;
+			}
+		}
+		for (; i < n; ++i) {
+			if (b1.get(i) != b2.get(i)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	public static enum OVERWRITE_CASE {
 
-		NEVER, IF_NEWER, ALWAYS
+		NEVER, IF_NEWER, ALWAYS,
+		/**
+		 * only if the resource in the jar is not the one last extracted, as
+		 * recorded in the folder's {@link ResourceManifest} (always, when
+		 * not running from a jar)
+		 */
+		IF_CHANGED
 	}
 
 	public static void extractResource(String path, File writeTo, Class jarClass) throws Exception {
@@ -665,6 +1047,18 @@ public class FileIO {
 		}
 		// check if the file exists and is newer than the JAR
 		File jarFile = getJarFile(jarClass);
+		ResourceManifest manifest = null;
+		long crc = -1;
+		if (overwrite == OVERWRITE_CASE.IF_CHANGED) {
+			if (jarFile.isFile()) {
+				// read from the zip directory, so nothing is decompressed
+				crc = getJarIndex(jarFile).getCrc(path.startsWith("/") ? path.substring(1) : path);
+			}
+			manifest = ResourceManifest.forFolder(writeTo.getAbsoluteFile().getParentFile());
+			if (crc != -1 && writeTo.exists() && manifest.isCurrent(writeTo.getName(), crc)) {
+				return;
+			}
+		}
 		if (writeTo.exists()) {
 			if (overwrite == OVERWRITE_CASE.NEVER) {
 				return;
@@ -717,6 +1111,8 @@ public class FileIO {
 		}
 		if (err != null) {
 			throw err;
+		} else if (manifest != null && crc != -1) {
+			manifest.put(writeTo.getName(), crc);
 		}
 	}
 
@@ -739,15 +1135,16 @@ public class FileIO {
 			if (input == null) {
 				throw new java.io.IOException("can't get input stream from " + res);
 			} else {
+				// decoded in one piece, so no character is split between reads
+				java.io.ByteArrayOutputStream data = new java.io.ByteArrayOutputStream();
 				byte[] buf = new byte[8192];
-				Charset c = null;
 				int len;
 				while ((len = input.read(buf)) > 0) {
-					if(c==null) {
-						c = detectCharset(buf);
-					}
-					output.append(new String(buf, 0, len, c));
+					data.write(buf, 0, len);
 				}
+				buf = data.toByteArray();
+				Charset c = detectCharset(buf);
+				output.append(new String(buf, c == null ? StandardCharsets.UTF_8 : c));
 			}
 		} finally {
 			try {
@@ -763,70 +1160,192 @@ public class FileIO {
     public static Charset detectCharset(File f) throws UnsupportedCharsetException {
 		return detectCharset(f, new String[]{"UTF-8", "windows-1253", "ISO-8859-7"});
 	}
-	
+
+	/**
+	 * Find the first charset that can decode the whole file. <br />
+	 * The file is read once, with every candidate checked as it goes.
+	 *
+	 * @param f file to check
+	 * @param charsets charset names, most preferred first
+	 * @return the charset, or null if none fit or the file could not be read
+	 * @throws UnsupportedCharsetException
+	 */
     public static Charset detectCharset(File f, String[] charsets) throws UnsupportedCharsetException {
+		return detectCharset(f, charsets, -1);
+	}
 
-		// iterate through sets to test, and return the first that is ok
-        for (String charsetName : charsets) {
-			final Charset c = Charset.forName(charsetName);
-			if(isCharset(f, c)) {
-				return c;
+	/**
+	 * Find the first charset that can decode the start of a file
+	 *
+	 * @param f file to check
+	 * @param charsets charset names, most preferred first
+	 * @param maxBytes how much of the file to look at, or -1 for all of it
+	 * @return the charset, or null if none fit or the file could not be read
+	 * @throws UnsupportedCharsetException
+	 */
+    public static Charset detectCharset(File f, String[] charsets, long maxBytes) throws UnsupportedCharsetException {
+		final CharsetDetector detector = new CharsetDetector(charsets);
+		try {
+			final FileInputStream input = new FileInputStream(f);
+			try {
+				detector.update(input, maxBytes);
+			} finally {
+				input.close();
 			}
-        }
-
-        return null;
-    }
-	
-    private static boolean isCharset(File f, Charset charset) {
-		boolean fileOk = false;
-        try {
-            BufferedInputStream input = new BufferedInputStream(new FileInputStream(f));
-
-            CharsetDecoder decoder = charset.newDecoder();
-            decoder.reset();
+		} catch (IOException e) {
+			return null;
+		}
+		if (maxBytes >= 0 && f.length() > maxBytes) {
+			// stopped partway: a character cut off at the limit is not an error
+			return detector.getCharset();
+		}
+		return detector.finish();
+	}
 
-            byte[] buffer = new byte[8192];
-			if(input.read(buffer) != -1) {
-				try {
-					decoder.decode(ByteBuffer.wrap(buffer));
-					fileOk = true;
-				} catch (CharacterCodingException e) {
-				}
-			}
-            input.close();
-        } catch (Exception e) {
-        }
-		return fileOk;
-    }
-	
     public static Charset detectCharset(byte[] data) throws UnsupportedCharsetException {
 		return detectCharset(data, new String[]{"UTF-8", "windows-1253", "ISO-8859-7"});
 	}
 
     public static Charset detectCharset(byte[] data, String[] charsets) throws UnsupportedCharsetException {
+		return detectCharset(data, 0, data.length, charsets);
+	}
+
+	/**
+	 * Find the first charset that can decode a range of bytes
+	 *
+	 * @param data bytes
+	 * @param off start
+	 * @param len number of bytes
+	 * @param charsets charset names, most preferred first
+	 * @return the charset, or null if none fit
+	 * @throws UnsupportedCharsetException
+	 */
+    public static Charset detectCharset(byte[] data, int off, int len, String[] charsets) throws UnsupportedCharsetException {
+		final CharsetDetector detector = new CharsetDetector(charsets);
+		detector.update(data, off, len);
+		return detector.finish();
+	}
+
+	/**
+	 * The class files and resource CRCs of a jar, kept until the jar changes
+	 */
+	protected static final class JarIndex {
 
-		// iterate through sets to test, and return the first that is ok
-        for (String charsetName : charsets) {
-			final Charset c = Charset.forName(charsetName);
-			if(isCharset(data, c)) {
-				return c;
+		final long length, lastModified;
+		/**
+		 * class entry names, in the order they are in the jar
+		 */
+		final String[] entries;
+		/**
+		 * resource entry name -&gt; CRC, as stored in the zip directory
+		 */
+		final HashMap<String, Long> crcs = new HashMap<String, Long>();
+		/**
+		 * indexes into entries, sorted by name
+		 */
+		final int[] sorted;
+
+		JarIndex(File jar) throws IOException {
+			length = jar.length();
+			lastModified = jar.lastModified();
+			final ArrayList<String> names = new ArrayList<String>();
+			final JarFile jf = new JarFile(jar);
+			try {
+				for (Enumeration<JarEntry> e = jf.entries(); e.hasMoreElements();) {
+					final JarEntry entry = e.nextElement();
+					final String name = entry.getName();
+					if (name.toLowerCase().endsWith(".class")) {
+						names.add(name);
+					} else if (!entry.isDirectory() && entry.getCrc() != -1) {
+						crcs.put(name, entry.getCrc());
+					}
+				}
+			} finally {
+				jf.close();
+			}
+			entries = names.toArray(new String[names.size()]);
+			final Integer[] order = new Integer[entries.length];
+			for (int i = 0; i < order.length; ++i) {
+				order[i] = i;
 			}
-        }
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return entries[a].compareTo(entries[b]);
+				}
+			});
+			sorted = new int[order.length];
+			for (int i = 0; i < order.length; ++i) {
+				sorted[i] = order[i];
+			}
+		}
 
-        return null;
-    }
-	
-    private static boolean isCharset(byte[] data, Charset charset) {
-		try {
-            CharsetDecoder decoder = charset.newDecoder();
-            decoder.reset();
-			decoder.decode(ByteBuffer.wrap(data));
-			return true;
-		} catch (CharacterCodingException e) {
+		/**
+		 * @param name resource path in the jar, without a leading '/'
+		 * @return its CRC, or -1 if it is not in the jar
+		 */
+		long getCrc(String name) {
+			final Long crc = crcs.get(name);
+			return crc == null ? -1 : crc;
+		}
+
+		boolean isCurrent(File jar) {
+			return jar.length() == length && jar.lastModified() == lastModified;
+		}
+
+		/**
+		 * @param prefix start of the entry name
+		 * @return every entry that starts with prefix, in jar order
+		 */
+		List<String> find(String prefix) {
+			// first name not less than the prefix: all matches follow it
+			int lo = 0, hi = sorted.length;
+			while (lo < hi) {
+				final int mid = (lo + hi) >>> 1;
+				if (entries[sorted[mid]].compareTo(prefix) < 0) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			hi = lo;
+			while (hi < sorted.length && entries[sorted[hi]].startsWith(prefix)) {
+				++hi;
+			}
+			final int[] found = Arrays.copyOfRange(sorted, lo, hi);
+			Arrays.sort(found);
+			final ArrayList<String> ret = new ArrayList<String>(found.length);
+			for (int i : found) {
+				ret.add(entries[i]);
+			}
+			return ret;
 		}
-		return false;
 	}
-	
+
+	/**
+	 * Get the class and resource index for a jar, reading the jar only if it is new or
+	 * has changed since the last call
+	 *
+	 * @param jar jar file
+	 * @return index of its class files
+	 * @throws IOException
+	 */
+	protected static JarIndex getJarIndex(File jar) throws IOException {
+		final String key = jar.getAbsolutePath();
+		synchronized (jarIndexes) {
+			final JarIndex index = jarIndexes.get(key);
+			if (index != null && index.isCurrent(jar)) {
+				return index;
+			}
+		}
+		// read outside the lock: at worst two threads both build it
+		final JarIndex index = new JarIndex(jar);
+		synchronized (jarIndexes) {
+			jarIndexes.put(key, index);
+		}
+		return index;
+	}
+
 	public static enum ITERATION {
 
 		NONE, CLASS, PACKAGE, FULL
@@ -874,8 +1393,6 @@ public class FileIO {
 		} else if (sourceJar != null || packageURL.getProtocol().equals("jar")) {
 			// this can also be used to load jar from resources
 			String jarFileName;
-			JarFile jf;
-			Enumeration<JarEntry> jarEntries;
 			String entryName;
 
 			// build jar file name, then loop through zipped entries
@@ -884,20 +1401,19 @@ public class FileIO {
 			if (jarFileName.startsWith("file:/")) {
 				jarFileName = jarFileName.substring(5);
 			}
-			if (jarFileName.startsWith("/")) {
+			if (jarFileName.length() > 2 && jarFileName.charAt(0) == '/' && jarFileName.charAt(2) == ':') {
+				// "/C:/..." on windows
 				jarFileName = jarFileName.substring(1);
 			}
 			if (jarFileName.contains("!")) {
 				jarFileName = jarFileName.substring(0, jarFileName.indexOf("!"));
 			}
 
-			jf = new JarFile(jarFileName);
-			jarEntries = jf.entries();
 			// in case of multiple sub-classes, keep track of what classes have been searched
-			ArrayList<String> loaded = new ArrayList<String>();
-			while (jarEntries.hasMoreElements()) {
-				entryName = jarEntries.nextElement().getName();
-				if (entryName.startsWith(packageName) && entryName.length() > packageName.length() && entryName.toLowerCase().endsWith(".class")) {
+			HashSet<String> loaded = new HashSet<String>();
+			for (String entry : getJarIndex(new File(jarFileName)).find(packageName)) {
+				entryName = entry;
+				if (entryName.length() > packageName.length()) {
 					if (entryName.contains(".")) {
 						entryName = entryName.substring(packageName.length() + 1, entryName.lastIndexOf('.'));
 					}
@@ -908,8 +1424,7 @@ public class FileIO {
 							// added - iteration
 							if (iterate == ITERATION.CLASS || iterate == ITERATION.FULL) {
 								entryName = entryName.substring(0, entryName.indexOf('$')).replace('/', '.');
-								if (!loaded.contains(entryName)) {
-									loaded.add(entryName);
+								if (loaded.add(entryName)) {
 									try {
 										Class c = Class.forName(packageName.replace('/', '.') + "." + entryName);
 										for (Class c2 : c.getDeclaredClasses()) {
@@ -935,7 +1450,7 @@ public class FileIO {
 			// File folder = new File(packageURL.getFile()); 
 			File[] contenuti = folder.listFiles();
 			// in case of multiple sub-classes, keep track of what classes have been searched
-			ArrayList<String> loaded = new ArrayList<String>();
+			HashSet<String> loaded = new HashSet<String>();
 			String entryName;
 			for (File actual : contenuti) {
 				entryName = actual.getName();
@@ -945,8 +1460,7 @@ public class FileIO {
 						// added - iteration
 						if (iterate == ITERATION.CLASS || iterate == ITERATION.FULL) {
 							entryName = entryName.substring(0, entryName.indexOf('$'));
-							if (!loaded.contains(entryName)) {
-								loaded.add(entryName);
+							if (loaded.add(entryName)) {
 								Class c = Class.forName(packageName.replace('/', '.') + "." + entryName);
 								for (Class c2 : c.getDeclaredClasses()) {
 									names.add(entryName + "." + c2.getSimpleName());
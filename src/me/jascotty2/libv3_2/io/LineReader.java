@@ -0,0 +1,218 @@
+/**
+ * Copyright (C) 2014 Jacob Scott <jascottytechie@gmail.com>
+ * Description: Reads a text file one line at a time into a reused buffer
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.jascotty2.libv3_2.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lines end at "\n", "\r" or "\r\n", as with BufferedReader.readLine, and a
+ * UTF-8 byte order mark at the start is dropped as the other FileIO readers
+ * do. <br />
+ * Each line is built in the same buffer, so reading a file does not create a
+ * String per line. The line returned by {@link #getLine()} is only valid
+ * until the next call to {@link #next()}; call toString() on it to keep it.
+ */
+public class LineReader implements Closeable, Iterable<CharSequence> {
+
+	protected final Reader in;
+	protected final char[] buf = new char[8192];
+	protected int pos = 0, limit = 0;
+	protected boolean eof = false, skipLF = false, first = true;
+	protected final StringBuilder line = new StringBuilder(256);
+	protected long lineNumber = 0;
+
+	/**
+	 * Open a UTF-8 file
+	 *
+	 * @param file file to read
+	 * @throws IOException
+	 */
+	public LineReader(File file) throws IOException {
+		this(file, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param file file to read
+	 * @param charset encoding of the file
+	 * @throws IOException
+	 */
+	public LineReader(File file, Charset charset) throws IOException {
+		this(new InputStreamReader(new FileInputStream(file), charset));
+	}
+
+	/**
+	 * @param in source (does not need to be buffered)
+	 */
+	public LineReader(Reader in) {
+		this.in = in;
+	}
+
+	/**
+	 * Move to the next line
+	 *
+	 * @return false at the end of the input
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException {
+		line.setLength(0);
+		boolean any = false;
+		while (true) {
+			if (pos >= limit && !fill()) {
+				if (any) {
+					++lineNumber;
+				}
+				return any;
+			}
+			if (skipLF) {
+				skipLF = false;
+				if (buf[pos] == '\n') {
+					++pos;
+					continue;
+				}
+			}
+			if (first) {
+				first = false;
+				if ((int) buf[pos] == 65279) {
+					++pos;
+					continue;
+				}
+			}
+			any = true;
+			// copy up to the line break in one go
+			int i = pos;
+			while (i < limit && buf[i] != '\n' && buf[i] != '\r') {
+				++i;
+			}
+			line.append(buf, pos, i - pos);
+			if (i < limit) {
+				skipLF = buf[i] == '\r';
+				pos = i + 1;
+				++lineNumber;
+				return true;
+			}
+			pos = i;
+		}
+	}
+
+	protected boolean fill() throws IOException {
+		if (eof) {
+			return false;
+		}
+		int n;
+		while ((n = in.read(buf, 0, buf.length)) == 0) {
+		}
+		if (n == -1) {
+			eof = true;
+			pos = limit = 0;
+			return false;
+		}
+		pos = 0;
+		limit = n;
+		return true;
+	}
+
+	/**
+	 * @return the current line, without its line break
+	 */
+	public CharSequence getLine() {
+		return line;
+	}
+
+	/**
+	 * @return how many lines have been read so far
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * Iterate over the remaining lines. Read errors are thrown as
+	 * UncheckedIOException.
+	 *
+	 * @return iterator over the same reused line
+	 */
+	@Override
+	public Iterator<CharSequence> iterator() {
+		return new Iterator<CharSequence>() {
+			// null: not looked yet
+			Boolean ready = null;
+
+			@Override
+			public boolean hasNext() {
+				if (ready == null) {
+					try {
+						ready = LineReader.this.next();
+					} catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				}
+				return ready;
+			}
+
+			@Override
+			public CharSequence next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				ready = null;
+				return line;
+			}
+		};
+	}
+
+	/**
+	 * Stream the remaining lines. Closing the stream closes this reader.
+	 * <br /> Each element is the same reused line, so the stream is
+	 * sequential only.
+	 *
+	 * @return lazy stream of lines
+	 */
+	public Stream<CharSequence> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+				Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							close();
+						} catch (IOException ex) {
+							throw new UncheckedIOException(ex);
+						}
+					}
+				});
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
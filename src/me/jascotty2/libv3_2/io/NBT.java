@@ -24,7 +24,6 @@ import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -32,6 +31,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -181,6 +183,12 @@ public class NBT {
 					return Tag.INT_ARRAY;
 				} else if (Long[].class == type || long[].class == type) {
 					return Tag.LONG_ARRAY;
+				} else if (ByteBuffer.class.isAssignableFrom(type)) {
+					return Tag.BYTE_ARRAY;
+				} else if (IntBuffer.class.isAssignableFrom(type)) {
+					return Tag.INT_ARRAY;
+				} else if (LongBuffer.class.isAssignableFrom(type)) {
+					return Tag.LONG_ARRAY;
 				} // Custom values
 				else if (Compound.class.isAssignableFrom(type)) {
 					return Tag.CUSTOM_COMPOUND;
@@ -220,6 +228,18 @@ public class NBT {
 	}
 
 	public static NBTMap load(File toLoad) throws IOException {
+		return load(toLoad, new NBTReader());
+	}
+
+	/**
+	 * Load a file with the given reader limits
+	 *
+	 * @param toLoad file to load (may be gzip compressed)
+	 * @param reader parser with the depth and memory budget to enforce
+	 * @return root compound
+	 * @throws IOException
+	 */
+	public static NBTMap load(File toLoad, NBTReader reader) throws IOException {
 		DataInputStream in;
 		// test if this is compressed first
 		RandomAccessFile file = new RandomAccessFile(toLoad, "r");
@@ -237,116 +257,63 @@ public class NBT {
 			in = new DataInputStream(new RandomInputStream(file));
 		}
 		// could theoretically load as a list, but in practice, the root should be a map
-		NBTMap base = load(in);
+		NBTMap base = reader.read(in);
 		in.close();
 		file.close();
 		return base;
 	}
 
-	public static NBTMap load(DataInputStream in) throws IOException {
-		NBTMap root = new NBTMap();
+	/**
+	 * Load a file without copying array tags: byte, int and long arrays are
+	 * left as read-only {@link ByteBuffer}, {@link IntBuffer} and
+	 * {@link LongBuffer} views. <br />
+	 * Uncompressed files are memory-mapped; compressed files are inflated once
+	 * into a single buffer, and the arrays are views of that.
+	 *
+	 * @param toLoad file to load
+	 * @param reader parser with the depth and memory budget to enforce
+	 * @return root compound
+	 * @throws IOException
+	 */
+	public static NBTMap loadMapped(File toLoad, NBTReader reader) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(toLoad, "r");
 		try {
-			byte type = in.readByte();
-			// should be a map
-			if (type == Tag.COMPOUND.value) {
-				// throw out implied name..
-				root.setName(in.readUTF());
-				while ((type = in.readByte()) != Tag.END.value) {
-					root.put(in.readUTF(), loadObject(in, type, 0));
-
-//					final String n = in.readUTF();
-//					debug("Loading Map Object <" + Tag.getTag(type) + "> '" + n + "'", 0);
-//					root.put(n, loadObject(in, type, 0));
+			final FileChannel ch = file.getChannel();
+			if (ch.size() > Integer.MAX_VALUE) {
+				throw new IOException("File too large to map: " + toLoad.getName());
+			}
+			ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			if (buf.remaining() >= 2 && ((buf.get(1) & 0xFF) << 8 | (buf.get(0) & 0xFF)) == GZIPInputStream.GZIP_MAGIC) {
+				// gzip: inflate everything up front, within the byte budget
+				InputStream in = new GZIPInputStream(new RandomInputStream(file));
+				try {
+					byte[] data = new byte[8192];
+					int len = 0, r;
+					while ((r = in.read(data, len, data.length - len)) > 0) {
+						if ((len += r) == data.length) {
+							if (data.length >= reader.getMaxBytes()) {
+								throw new RuntimeException("NBT data exceeds byte budget of " + reader.getMaxBytes());
+							}
+							data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8, Math.min(reader.getMaxBytes() + 1, data.length * 2L)));
+						}
+					}
+					buf = ByteBuffer.wrap(data, 0, len);
+				} finally {
+					in.close();
 				}
 			}
-		} catch (EOFException e) {
+			return reader.read(new NBTBufferInput(buf));
+		} finally {
+			file.close();
 		}
-		return root;
 	}
 
-	protected static Object loadObject(DataInputStream in, byte type, int depth) throws IOException {
-		if (type == Tag.BYTE.value) {
-			return in.readByte();
-		} else if (type == Tag.SHORT.value) {
-			return in.readShort();
-		} else if (type == Tag.INT.value) {
-			return in.readInt();
-		} else if (type == Tag.LONG.value) {
-			return in.readLong();
-		} else if (type == Tag.FLOAT.value) {
-			return in.readFloat();
-		} else if (type == Tag.DOUBLE.value) {
-			return in.readDouble();
-		} else if (type == Tag.STRING.value) {
-			return in.readUTF();
-		} else if (type == Tag.LONG_STRING.value) {
-			byte[] data = new byte[in.readInt()];
-			in.readFully(data);
-			return new String(data);
-		} else if (type == Tag.BYTE_ARRAY.value) {
-			byte[] data = new byte[in.readInt()];
-			in.readFully(data);
-			return data;
-		} else if (type == Tag.INT_ARRAY.value) {
-			final int size = in.readInt();
-			int[] data = new int[size];
-			for (int i = 0; i < size; ++i) {
-				data[i] = in.readInt();
-			}
-			return data;
-		} else if (type == Tag.LONG_ARRAY.value) {
-			final int size = in.readInt();
-			long[] data = new long[size];
-			for (int i = 0; i < size; ++i) {
-				data[i] = in.readLong();
-			}
-			return data;
-		} else // at this point, only list and map (recursive-capable types) are left
-		if (depth > MAX_DEPTH) {
-			throw new RuntimeException("Tried to read NBT tag with too high complexity, depth > " + MAX_DEPTH);
-		} else if (type == Tag.LIST.value) {
-			type = in.readByte();
-			final int size = in.readInt();
-			Tag t = Tag.getTag(type);
-			NBTList data = t == null || size == 0 ? new NBTList() : new NBTList(t.type);
-			if (t == null && size > 0) {
-				throw new RuntimeException("Tried to read unknown NBT tag " + type);
-			}
-//			debug("Loading List<" + t + ">[" + size + "]", depth + 1);
-			for (int i = 0; i < size; ++i) {
-				data.add(loadObject(in, type, depth + 1));
-//				if (type == Tag.LIST.value || type == Tag.COMPOUND.value) {
-//					debug("List Object [" + i + "]", depth + 1);
-//				} else {
-//					debugPrint("List Object [" + i + "]", depth + 1);
-//				}
-//				Object o = loadObject(in, type, depth + 1);
-//				if (type != Tag.LIST.value && type != Tag.COMPOUND.value) {
-//					System.out.println("  " + o);
-//				}
-//				data.add(o);
-			}
-			return data;
-		} else if (type == Tag.COMPOUND.value) {
-			NBTMap data = new NBTMap();
-			while ((type = in.readByte()) != Tag.END.value) {
-				data.put(in.readUTF(), loadObject(in, type, depth + 1));
-//				final String n = in.readUTF();
-//				if (type == Tag.LIST.value || type == Tag.COMPOUND.value) {
-//					debug("Loading Map Object <" + Tag.getTag(type) + "> '" + n + "'", depth + 1);
-//				} else {
-//					debugPrint("Loading Map Object <" + Tag.getTag(type) + "> '" + n + "'", depth + 1);
-//				}
-//				Object o = loadObject(in, type, depth + 1);
-//				if (type != Tag.LIST.value && type != Tag.COMPOUND.value) {
-//					System.out.println("  " + o);
-//				}
-//				data.put(n, o);
-			}
-			return data;
-		} else {
-			throw new RuntimeException("Tried to read unknown NBT tag " + type);
-		}
+	public static NBTMap loadMapped(File toLoad) throws IOException {
+		return loadMapped(toLoad, new NBTReader());
+	}
+
+	public static NBTMap load(DataInputStream in) throws IOException {
+		return new NBTReader().read(in);
 	}
 
 //	private static void debug(String mes, int pad) {
@@ -444,20 +411,53 @@ public class NBT {
 			out.writeInt(sb.length);
 			out.write(sb);
 		} else if (type == Tag.BYTE_ARRAY) {
-			byte[] arr = (byte[]) obj;
-			out.writeInt(arr.length);
-			out.write(arr);
+			if (obj instanceof ByteBuffer) {
+				ByteBuffer b = ((ByteBuffer) obj).duplicate();
+				out.writeInt(b.remaining());
+				if (b.hasArray()) {
+					out.write(b.array(), b.arrayOffset() + b.position(), b.remaining());
+				} else {
+					byte[] chunk = new byte[Math.min(b.remaining(), 8192)];
+					while (b.hasRemaining()) {
+						final int len = Math.min(chunk.length, b.remaining());
+						b.get(chunk, 0, len);
+						out.write(chunk, 0, len);
+					}
+				}
+			} else {
+				byte[] arr = NBTMap.bytes(obj);
+				out.writeInt(arr.length);
+				out.write(arr);
+			}
 		} else if (type == Tag.INT_ARRAY) {
-			int[] arr = (int[]) obj;
-			out.writeInt(arr.length);
-			for (int i = 0; i < arr.length; ++i) {
-				out.writeInt(arr[i]);
+			if (obj instanceof IntBuffer) {
+				IntBuffer b = (IntBuffer) obj;
+				final int start = b.position(), end = b.limit();
+				out.writeInt(end - start);
+				for (int i = start; i < end; ++i) {
+					out.writeInt(b.get(i));
+				}
+			} else {
+				int[] arr = NBTMap.ints(obj);
+				out.writeInt(arr.length);
+				for (int i = 0; i < arr.length; ++i) {
+					out.writeInt(arr[i]);
+				}
 			}
 		} else if (type == Tag.LONG_ARRAY) {
-			long[] arr = (long[]) obj;
-			out.writeInt(arr.length);
-			for (int i = 0; i < arr.length; ++i) {
-				out.writeLong(arr[i]);
+			if (obj instanceof LongBuffer) {
+				LongBuffer b = (LongBuffer) obj;
+				final int start = b.position(), end = b.limit();
+				out.writeInt(end - start);
+				for (int i = start; i < end; ++i) {
+					out.writeLong(b.get(i));
+				}
+			} else {
+				long[] arr = NBTMap.longs(obj);
+				out.writeInt(arr.length);
+				for (int i = 0; i < arr.length; ++i) {
+					out.writeLong(arr[i]);
+				}
 			}
 		} else // at this point, only list and map (recursive-capable types) are left
 		if (depth > MAX_DEPTH) {
@@ -732,7 +732,7 @@ public class NBT {
 				str.append(obj);
 				break;
 			case BYTE_ARRAY:
-				byte[] arr = (byte[]) obj;
+				byte[] arr = NBTMap.bytes(obj);
 				str.append("[").append(arr.length).append("]{");
 				for (int i = 0; i < arr.length; ++i) {
 					str.append(arr[i]);
@@ -743,7 +743,7 @@ public class NBT {
 				str.append("}");
 				break;
 			case INT_ARRAY:
-				int[] arr2 = (int[]) obj;
+				int[] arr2 = NBTMap.ints(obj);
 				str.append("[").append(arr2.length).append("]{");
 				for (int i = 0; i < arr2.length; ++i) {
 					str.append(arr2[i]);
@@ -754,7 +754,7 @@ public class NBT {
 				str.append("}");
 				break;
 			case LONG_ARRAY:
-				long[] arr3 = (long[]) obj;
+				long[] arr3 = NBTMap.longs(obj);
 				str.append("[").append(arr3.length).append("]{");
 				for (int i = 0; i < arr3.length; ++i) {
 					str.append(arr3[i]);
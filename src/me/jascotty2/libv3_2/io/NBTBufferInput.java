@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2014 Jacob Scott <jascottytechie@gmail.com>
+ * Description: DataInput over a ByteBuffer, so that NBT array tags can be
+ * returned as slices of a mapped or already-inflated file
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.jascotty2.libv3_2.io;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class NBTBufferInput implements DataInput {
+
+	protected final ByteBuffer buf;
+
+	public NBTBufferInput(ByteBuffer buf) {
+		// NBT is always big endian
+		this.buf = buf.duplicate().order(ByteOrder.BIG_ENDIAN);
+	}
+
+	public int position() {
+		return buf.position();
+	}
+
+	public int remaining() {
+		return buf.remaining();
+	}
+
+	/**
+	 * Take the next <code>len</code> bytes as a read-only view, without copying
+	 *
+	 * @param len number of bytes
+	 * @return big-endian view of the bytes
+	 * @throws EOFException if there are not enough bytes left
+	 */
+	public ByteBuffer slice(int len) throws EOFException {
+		require(len);
+		final ByteBuffer s = buf.slice();
+		s.limit(len);
+		buf.position(buf.position() + len);
+		return s.asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN);
+	}
+
+	private void require(int len) throws EOFException {
+		if (len < 0 || buf.remaining() < len) {
+			throw new EOFException();
+		}
+	}
+
+	@Override
+	public void readFully(byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		require(len);
+		buf.get(b, off, len);
+	}
+
+	@Override
+	public int skipBytes(int n) throws IOException {
+		n = Math.max(0, Math.min(n, buf.remaining()));
+		buf.position(buf.position() + n);
+		return n;
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		require(1);
+		return buf.get();
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xFF;
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		require(2);
+		return buf.getShort();
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xFFFF;
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		require(2);
+		return buf.getChar();
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		require(4);
+		return buf.getInt();
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		require(8);
+		return buf.getLong();
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		require(4);
+		return buf.getFloat();
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		require(8);
+		return buf.getDouble();
+	}
+
+	@Override
+	public String readLine() throws IOException {
+		if (!buf.hasRemaining()) {
+			return null;
+		}
+		StringBuilder line = new StringBuilder();
+		while (buf.hasRemaining()) {
+			final char c = (char) (buf.get() & 0xFF);
+			if (c == '\n') {
+				break;
+			} else if (c == '\r') {
+				if (buf.hasRemaining() && buf.get(buf.position()) == '\n') {
+					buf.get();
+				}
+				break;
+			}
+			line.append(c);
+		}
+		return line.toString();
+	}
+
+	@Override
+	public String readUTF() throws IOException {
+		return DataInputStream.readUTF(this);
+	}
+}
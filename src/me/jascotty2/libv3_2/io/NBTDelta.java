@@ -0,0 +1,341 @@
+/**
+ * Copyright (C) 2014 Jacob Scott <jascottytechie@gmail.com>
+ * Description: Differences between two NBT trees, stored as NBT, so that
+ * backups can keep one full snapshot and a chain of small deltas
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.jascotty2.libv3_2.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import me.jascotty2.libv3_2.io.NBT.Tag;
+
+/**
+ * A compound delta has up to four entries:<br />
+ * <code>s</code> - compound of keys that were added or replaced<br />
+ * <code>r</code> - list of keys that were removed<br />
+ * <code>c</code> - compound of key -&gt; delta, for compounds that changed<br />
+ * <code>l</code> - compound of key -&gt; list delta, for lists that
+ * changed<br />
+ * A list delta has <code>n</code> (new size), and lists <code>s</code> of
+ * {<code>i</code>, <code>v</code>} replaced values and <code>c</code> of
+ * {<code>i</code>, <code>d</code>} compound deltas, both by index.
+ */
+public class NBTDelta {
+
+	/**
+	 * Compute the changes that turn <code>base</code> into
+	 * <code>target</code>
+	 *
+	 * @param base previous snapshot
+	 * @param target current data
+	 * @return delta (empty if nothing changed)
+	 */
+	public static NBTMap diff(Map<String, ?> base, Map<String, ?> target) {
+		return diffCompound(base, target, 0);
+	}
+
+	/**
+	 * Apply a delta in place
+	 *
+	 * @param base snapshot the delta was made from; this is modified
+	 * @param delta delta from {@link #diff(Map, Map)}
+	 * @return base
+	 */
+	public static Map<String, Object> patch(Map<String, Object> base, Map<String, Object> delta) {
+		patchCompound(base, delta, 0);
+		return base;
+	}
+
+	public static boolean isEmpty(Map<String, ?> delta) {
+		return delta == null || delta.isEmpty();
+	}
+
+	/**
+	 * Save only what changed since the base snapshot
+	 *
+	 * @param base snapshot the delta is relative to
+	 * @param target current data
+	 * @param deltaFile file to write
+	 * @return false if there was nothing to save
+	 * @throws IOException
+	 */
+	public static boolean saveDelta(Map<String, ?> base, Map<String, ?> target, File deltaFile) throws IOException {
+		final NBTMap delta = diff(base, target);
+		if (delta.isEmpty()) {
+			return false;
+		}
+		NBT.save(delta, deltaFile);
+		return true;
+	}
+
+	/**
+	 * Load a full snapshot and replay deltas over it
+	 *
+	 * @param baseFile full snapshot
+	 * @param deltaFiles deltas, oldest first
+	 * @return restored data
+	 * @throws IOException
+	 */
+	public static NBTMap restore(File baseFile, File... deltaFiles) throws IOException {
+		final NBTMap data = NBT.load(baseFile);
+		for (File f : deltaFiles) {
+			patch(data, NBT.load(f));
+		}
+		return data;
+	}
+
+	protected static NBTMap diffCompound(Map<String, ?> base, Map<String, ?> target, int depth) {
+		if (depth > NBT.MAX_DEPTH) {
+			throw new RuntimeException("Tried to diff NBT tag with too high complexity, depth > " + NBT.MAX_DEPTH);
+		}
+		final NBTMap delta = new NBTMap();
+		NBTMap set = null, children = null, lists = null;
+		NBTList removed = null;
+		for (Map.Entry<String, ?> e : target.entrySet()) {
+			final Object now = normalize(e.getValue());
+			if (now == null) {
+				continue;
+			}
+			final Object was = normalize(base.get(e.getKey()));
+			if (was instanceof Map && now instanceof Map) {
+				final NBTMap d = diffCompound(asMap(was), asMap(now), depth + 1);
+				if (!d.isEmpty()) {
+					(children == null ? children = new NBTMap() : children).put(e.getKey(), d);
+				}
+			} else if (was instanceof List && now instanceof List && sameElementType((List<?>) was, (List<?>) now)) {
+				final NBTMap d = diffList((List<?>) was, (List<?>) now, depth + 1);
+				if (!d.isEmpty()) {
+					(lists == null ? lists = new NBTMap() : lists).put(e.getKey(), d);
+				}
+			} else if (!valuesEqual(was, now, depth + 1)) {
+				(set == null ? set = new NBTMap() : set).put(e.getKey(), now);
+			}
+		}
+		for (Map.Entry<String, ?> e : base.entrySet()) {
+			if (e.getValue() != null && normalize(target.get(e.getKey())) == null) {
+				(removed == null ? removed = new NBTList(String.class) : removed).add(e.getKey());
+			}
+		}
+		if (set != null) {
+			delta.put("s", set);
+		}
+		if (removed != null) {
+			delta.put("r", removed);
+		}
+		if (children != null) {
+			delta.put("c", children);
+		}
+		if (lists != null) {
+			delta.put("l", lists);
+		}
+		return delta;
+	}
+
+	protected static NBTMap diffList(List<?> base, List<?> target, int depth) {
+		final NBTMap delta = new NBTMap();
+		NBTList set = null, children = null;
+		int i = 0;
+		final Iterator<?> b = base.iterator();
+		for (Object now : target) {
+			now = normalize(now);
+			final Object was = b.hasNext() ? normalize(b.next()) : null;
+			if (was instanceof Map && now instanceof Map) {
+				final NBTMap d = diffCompound(asMap(was), asMap(now), depth + 1);
+				if (!d.isEmpty()) {
+					NBTMap c = new NBTMap();
+					c.put("i", i);
+					c.put("d", d);
+					(children == null ? children = new NBTList(NBTMap.class) : children).add(c);
+				}
+			} else if (!valuesEqual(was, now, depth + 1)) {
+				NBTMap c = new NBTMap();
+				c.put("i", i);
+				c.put("v", now);
+				(set == null ? set = new NBTList(NBTMap.class) : set).add(c);
+			}
+			++i;
+		}
+		if (set != null || children != null || base.size() != target.size()) {
+			delta.put("n", target.size());
+		}
+		if (set != null) {
+			delta.put("s", set);
+		}
+		if (children != null) {
+			delta.put("c", children);
+		}
+		return delta;
+	}
+
+	protected static void patchCompound(Map<String, Object> base, Map<String, Object> delta, int depth) {
+		if (depth > NBT.MAX_DEPTH) {
+			throw new RuntimeException("Tried to patch NBT tag with too high complexity, depth > " + NBT.MAX_DEPTH);
+		}
+		Object o;
+		if ((o = delta.get("r")) instanceof List) {
+			for (Object k : (List<?>) o) {
+				base.remove(String.valueOf(k));
+			}
+		}
+		if ((o = delta.get("s")) instanceof Map) {
+			base.putAll(asMap(o));
+		}
+		if ((o = delta.get("c")) instanceof Map) {
+			for (Map.Entry<String, Object> e : asMap(o).entrySet()) {
+				// diff only writes a compound delta where the base had a compound
+				final Object child = normalize(base.get(e.getKey()));
+				if (!(child instanceof Map)) {
+					throw new RuntimeException("NBT delta does not match base: '" + e.getKey() + "' is not a compound");
+				}
+				base.put(e.getKey(), child);
+				patchCompound(asMap(child), asMap(e.getValue()), depth + 1);
+			}
+		}
+		if ((o = delta.get("l")) instanceof Map) {
+			for (Map.Entry<String, Object> e : asMap(o).entrySet()) {
+				final Object child = base.get(e.getKey());
+				if (!(child instanceof List)) {
+					throw new RuntimeException("NBT delta does not match base: '" + e.getKey() + "' is not a list");
+				}
+				patchList(asList(child), asMap(e.getValue()), depth + 1);
+			}
+		}
+	}
+
+	protected static void patchList(List<Object> base, Map<String, Object> delta, int depth) {
+		final Object n = delta.get("n");
+		if (n instanceof Integer) {
+			while (base.size() > (Integer) n) {
+				base.remove(base.size() - 1);
+			}
+		}
+		Object o;
+		if ((o = delta.get("s")) instanceof List) {
+			for (Object entry : (List<?>) o) {
+				final Map<String, Object> e = asMap(entry);
+				final int i = (Integer) e.get("i");
+				if (i == base.size()) {
+					base.add(e.get("v"));
+				} else if (i < base.size()) {
+					base.set(i, e.get("v"));
+				} else {
+					throw new RuntimeException("NBT delta does not match base: list index " + i + " past end " + base.size());
+				}
+			}
+		}
+		if ((o = delta.get("c")) instanceof List) {
+			for (Object entry : (List<?>) o) {
+				final Map<String, Object> e = asMap(entry);
+				final int i = (Integer) e.get("i");
+				final Object child = normalize(base.get(i));
+				if (!(child instanceof Map)) {
+					throw new RuntimeException("NBT delta does not match base: list index " + i + " is not a compound");
+				}
+				base.set(i, child);
+				patchCompound(asMap(child), asMap(e.get("d")), depth + 1);
+			}
+		}
+	}
+
+	/**
+	 * NBT compounds are always String-keyed: the one unchecked cast for them
+	 */
+	@SuppressWarnings("unchecked")
+	protected static Map<String, Object> asMap(Object o) {
+		return (Map<String, Object>) o;
+	}
+
+	@SuppressWarnings("unchecked")
+	protected static List<Object> asList(Object o) {
+		return (List<Object>) o;
+	}
+
+	/**
+	 * Unify values that save the same way, so they compare equal: custom
+	 * compounds become maps, and booleans become bytes
+	 */
+	protected static Object normalize(Object o) {
+		if (o instanceof NBT.Compound) {
+			final NBT.Compound c = (NBT.Compound) o;
+			final NBTMap m = new NBTMap();
+			final String[] keys = c.nbtKeys();
+			if (keys != null) {
+				for (int i = 0; i < keys.length; ++i) {
+					final Object v = c.nbtValue(i);
+					if (v != null) {
+						m.put(keys[i], v);
+					}
+				}
+			}
+			return m;
+		} else if (o instanceof Boolean) {
+			return (byte) ((Boolean) o ? 1 : 0);
+		}
+		return o;
+	}
+
+	static boolean sameElementType(List<?> a, List<?> b) {
+		if (a.isEmpty() || b.isEmpty()) {
+			return true;
+		}
+		return Tag.getType(normalize(a.get(0))) == Tag.getType(normalize(b.get(0)));
+	}
+
+	protected static boolean valuesEqual(Object a, Object b, int depth) {
+		a = normalize(a);
+		b = normalize(b);
+		if (a == b) {
+			return true;
+		} else if (a == null || b == null) {
+			return false;
+		}
+		final Tag ta = Tag.getType(a), tb = Tag.getType(b);
+		if (ta != tb) {
+			return false;
+		} else if (ta == Tag.BYTE_ARRAY) {
+			return a instanceof ByteBuffer && b instanceof ByteBuffer ? a.equals(b)
+					: Arrays.equals(NBTMap.bytes(a), NBTMap.bytes(b));
+		} else if (ta == Tag.INT_ARRAY) {
+			return a instanceof IntBuffer && b instanceof IntBuffer ? a.equals(b)
+					: Arrays.equals(NBTMap.ints(a), NBTMap.ints(b));
+		} else if (ta == Tag.LONG_ARRAY) {
+			return a instanceof LongBuffer && b instanceof LongBuffer ? a.equals(b)
+					: Arrays.equals(NBTMap.longs(a), NBTMap.longs(b));
+		} else if (ta == Tag.COMPOUND) {
+			return diffCompound(asMap(a), asMap(b), depth + 1).isEmpty();
+		} else if (ta == Tag.LIST) {
+			final List<?> la = (List<?>) a, lb = (List<?>) b;
+			if (la.size() != lb.size()) {
+				return false;
+			}
+			final Iterator<?> ia = la.iterator(), ib = lb.iterator();
+			while (ia.hasNext()) {
+				if (!valuesEqual(ia.next(), ib.next(), depth + 1)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return a.equals(b);
+	}
+}
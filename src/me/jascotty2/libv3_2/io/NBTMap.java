@@ -1,11 +1,53 @@
 package me.jascotty2.libv3_2.io;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
-public class NBTMap extends HashMap<String, Object> {
+/**
+ * Map of NBT compound values. <br />
+ * Most compounds are small (a saved clock has 11 entries), so up to
+ * {@link #COMPACT_MAX} entries are kept in flat parallel key/value arrays,
+ * using linear probing. Larger compounds switch over to a HashMap. <br />
+ * Keys cannot be null, whatever the size of the map.
+ */
+public class NBTMap extends AbstractMap<String, Object> implements Cloneable, Serializable {
+
+	private static final long serialVersionUID = 1L;
+	/**
+	 * compounds with more entries than this are moved to a HashMap
+	 */
+	public static final int COMPACT_MAX = 24;
+	// marks a removed slot so that probe chains stay intact
+	private static final Object DELETED = new Object();
 	protected String name;
+	// compact storage: capacity is always a power of two
+	private transient Object[] keys;
+	private transient Object[] vals;
+	private transient int size, used, modCount;
+	// large storage
+	private transient HashMap<String, Object> hashed;
+	private transient Set<Map.Entry<String, Object>> entrySet;
+
+	public NBTMap() {
+	}
+
+	public NBTMap(Map<String, ?> map) {
+		putAll(map);
+	}
 //
 //	public NBTMap(String name) {
 //		this.name = name;
@@ -16,6 +58,279 @@ public class NBTMap extends HashMap<String, Object> {
 //		this.name = name;
 //	}
 //	
+
+	private static int hash(Object key) {
+		final int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private int slotOf(Object key) {
+		if (keys != null && key != null) {
+			final int mask = keys.length - 1;
+			for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+				final Object k = keys[i];
+				if (k == null) {
+					return -1;
+				} else if (k != DELETED && (k == key || k.equals(key))) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int size() {
+		return hashed != null ? hashed.size() : size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return hashed != null ? hashed.containsKey(key) : slotOf(key) >= 0;
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (hashed != null) {
+			return hashed.get(key);
+		}
+		final int i = slotOf(key);
+		return i >= 0 ? vals[i] : null;
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		if (key == null) {
+			throw new NullPointerException("NBT keys cannot be null");
+		} else if (hashed != null) {
+			return hashed.put(key, value);
+		}
+		if (keys == null) {
+			keys = new Object[4];
+			vals = new Object[4];
+		}
+		final int mask = keys.length - 1;
+		int free = -1;
+		for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+			final Object k = keys[i];
+			if (k == null) {
+				if (free < 0) {
+					free = i;
+					++used;
+				}
+				break;
+			} else if (k == DELETED) {
+				if (free < 0) {
+					free = i;
+				}
+			} else if (k == key || k.equals(key)) {
+				final Object old = vals[i];
+				vals[i] = value;
+				return old;
+			}
+		}
+		keys[free] = key;
+		vals[free] = value;
+		++size;
+		++modCount;
+		if (size > COMPACT_MAX) {
+			toHashed();
+		} else if (used * 4 > keys.length * 3) {
+			// keep the table at most 3/4 full, counting removed slots
+			rehash(size * 4 > keys.length * 3 / 2 ? keys.length * 2 : keys.length);
+		}
+		return null;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		if (hashed != null) {
+			return hashed.remove(key);
+		}
+		final int i = slotOf(key);
+		return i >= 0 ? removeSlot(i) : null;
+	}
+
+	private Object removeSlot(int i) {
+		final Object old = vals[i];
+		keys[i] = DELETED;
+		vals[i] = null;
+		--size;
+		++modCount;
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		hashed = null;
+		keys = vals = null;
+		size = used = 0;
+		++modCount;
+	}
+
+	private void rehash(int capacity) {
+		final Object[] oldKeys = keys, oldVals = vals;
+		keys = new Object[capacity];
+		vals = new Object[capacity];
+		final int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; ++j) {
+			final Object k = oldKeys[j];
+			if (k != null && k != DELETED) {
+				int i = hash(k) & mask;
+				while (keys[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = k;
+				vals[i] = oldVals[j];
+			}
+		}
+		used = size;
+	}
+
+	private void toHashed() {
+		HashMap<String, Object> m = new HashMap<String, Object>(size * 2);
+		for (int i = 0; i < keys.length; ++i) {
+			final Object k = keys[i];
+			if (k != null && k != DELETED) {
+				m.put((String) k, vals[i]);
+			}
+		}
+		keys = vals = null;
+		size = used = 0;
+		hashed = m;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		if (hashed != null) {
+			return hashed.entrySet();
+		}
+		return entrySet != null ? entrySet : (entrySet = new CompactEntrySet());
+	}
+
+	private final class CompactEntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+		@Override
+		public Iterator<Map.Entry<String, Object>> iterator() {
+			return hashed != null ? hashed.entrySet().iterator() : new CompactIterator();
+		}
+
+		@Override
+		public int size() {
+			return NBTMap.this.size();
+		}
+
+		@Override
+		public void clear() {
+			NBTMap.this.clear();
+		}
+	}
+
+	private final class CompactIterator implements Iterator<Map.Entry<String, Object>> {
+
+		final Object[] k = keys;
+		int next = -1, last = -1, expected = modCount;
+
+		CompactIterator() {
+			advance();
+		}
+
+		private void advance() {
+			if (k != null) {
+				while (++next < k.length && (k[next] == null || k[next] == DELETED)) {
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return k != null && next < k.length;
+		}
+
+		@Override
+		public Map.Entry<String, Object> next() {
+			if (expected != modCount || k != keys) {
+				throw new ConcurrentModificationException();
+			} else if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			advance();
+			return new CompactEntry(last);
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			} else if (expected != modCount || k != keys) {
+				throw new ConcurrentModificationException();
+			}
+			// removed slots are only marked, so the walk order is unaffected
+			removeSlot(last);
+			expected = modCount;
+			last = -1;
+		}
+	}
+
+	private final class CompactEntry implements Map.Entry<String, Object> {
+
+		final Object[] k = keys, v = vals;
+		final int slot;
+		final String key;
+
+		CompactEntry(int slot) {
+			this.slot = slot;
+			this.key = (String) k[slot];
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public Object getValue() {
+			return v[slot];
+		}
+
+		@Override
+		public Object setValue(Object value) {
+			if (k != keys || k[slot] != key) {
+				throw new ConcurrentModificationException();
+			}
+			final Object old = v[slot];
+			v[slot] = value;
+			return old;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry)) {
+				return false;
+			}
+			final Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			final Object val = getValue();
+			return getKey().equals(e.getKey()) && (val == null ? e.getValue() == null : val.equals(e.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			final Object val = getValue();
+			return getKey().hashCode() ^ (val == null ? 0 : val.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+
 	public String getName() {
 		return name;
 	}
@@ -112,6 +427,129 @@ public class NBTMap extends HashMap<String, Object> {
 		return o instanceof Integer[] ? (Integer[]) o : def;
 	}
 	
+	/**
+	 * Byte array tag as a primitive array. <br />
+	 * Arrays loaded from a buffer are copied: use
+	 * {@link #getByteBuffer(String)} to read those in place.
+	 */
+	public byte[] getBytes(String key) {
+		return bytes(get(key));
+	}
+	public byte[] getBytes(String key, byte[] def) {
+		final byte[] b = bytes(get(key));
+		return b != null ? b : def;
+	}
+	
+	/**
+	 * Int array tag as a primitive array. <br />
+	 * Arrays loaded from a buffer are copied: use
+	 * {@link #getIntBuffer(String)} to read those in place.
+	 */
+	public int[] getInts(String key) {
+		return ints(get(key));
+	}
+	public int[] getInts(String key, int[] def) {
+		final int[] i = ints(get(key));
+		return i != null ? i : def;
+	}
+	
+	/**
+	 * Long array tag as a primitive array. <br />
+	 * Arrays loaded from a buffer are copied: use
+	 * {@link #getLongBuffer(String)} to read those in place.
+	 */
+	public long[] getLongs(String key) {
+		return longs(get(key));
+	}
+	public long[] getLongs(String key, long[] def) {
+		final long[] l = longs(get(key));
+		return l != null ? l : def;
+	}
+	
+	/**
+	 * View of a byte array tag, sharing storage with the loaded data
+	 */
+	public ByteBuffer getByteBuffer(String key) {
+		final Object o = get(key);
+		return o instanceof ByteBuffer ? ((ByteBuffer) o).duplicate()
+				: (o instanceof byte[] ? ByteBuffer.wrap((byte[]) o) : null);
+	}
+	
+	/**
+	 * View of an int array tag, sharing storage with the loaded data
+	 */
+	public IntBuffer getIntBuffer(String key) {
+		final Object o = get(key);
+		return o instanceof IntBuffer ? ((IntBuffer) o).duplicate()
+				: (o instanceof int[] ? IntBuffer.wrap((int[]) o) : null);
+	}
+	
+	/**
+	 * View of a long array tag, sharing storage with the loaded data
+	 */
+	public LongBuffer getLongBuffer(String key) {
+		final Object o = get(key);
+		return o instanceof LongBuffer ? ((LongBuffer) o).duplicate()
+				: (o instanceof long[] ? LongBuffer.wrap((long[]) o) : null);
+	}
+	
+	static byte[] bytes(Object o) {
+		if (o instanceof byte[]) {
+			return (byte[]) o;
+		} else if (o instanceof ByteBuffer) {
+			final ByteBuffer b = ((ByteBuffer) o).duplicate();
+			final byte[] arr = new byte[b.remaining()];
+			b.get(arr);
+			return arr;
+		} else if (o instanceof Byte[]) {
+			final Byte[] b = (Byte[]) o;
+			final byte[] arr = new byte[b.length];
+			for (int i = 0; i < arr.length; ++i) {
+				arr[i] = b[i];
+			}
+			return arr;
+		}
+		return null;
+	}
+	
+	static int[] ints(Object o) {
+		if (o instanceof int[]) {
+			return (int[]) o;
+		} else if (o instanceof IntBuffer) {
+			final IntBuffer b = ((IntBuffer) o).duplicate();
+			final int[] arr = new int[b.remaining()];
+			b.get(arr);
+			return arr;
+		} else if (o instanceof Integer[]) {
+			final Integer[] b = (Integer[]) o;
+			final int[] arr = new int[b.length];
+			for (int i = 0; i < arr.length; ++i) {
+				arr[i] = b[i];
+			}
+			return arr;
+		}
+		return null;
+	}
+	
+	static long[] longs(Object o) {
+		if (o instanceof long[]) {
+			return (long[]) o;
+		} else if (o instanceof LongBuffer) {
+			final LongBuffer b = ((LongBuffer) o).duplicate();
+			final long[] arr = new long[b.remaining()];
+			b.get(arr);
+			return arr;
+		} else if (o instanceof Long[]) {
+			final Long[] b = (Long[]) o;
+			final long[] arr = new long[b.length];
+			for (int i = 0; i < arr.length; ++i) {
+				arr[i] = b[i];
+			}
+			return arr;
+		}
+		return null;
+	}
+	
 	public List getList(String key) {
 		final Object o = get(key);
 		return o instanceof List ? (List) o : null;
@@ -147,5 +585,43 @@ public class NBTMap extends HashMap<String, Object> {
 		final Object o = get(key);
 		return o instanceof NBTMap ? (NBTMap) o : def;
 	}
-	
+
+	/**
+	 * Shallow copy, as HashMap.clone: the values themselves are shared
+	 */
+	@Override
+	public NBTMap clone() {
+		final NBTMap m;
+		try {
+			m = (NBTMap) super.clone();
+		} catch (CloneNotSupportedException ex) {
+			throw new InternalError(ex);
+		}
+		if (hashed != null) {
+			m.hashed = new HashMap<String, Object>(hashed);
+		} else if (keys != null) {
+			m.keys = keys.clone();
+			m.vals = vals.clone();
+		}
+		m.modCount = 0;
+		m.entrySet = null;
+		return m;
+	}
+
+	// written as a count and then each entry, so the storage can change
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size());
+		for (Map.Entry<String, Object> e : entrySet()) {
+			out.writeObject(e.getKey());
+			out.writeObject(e.getValue());
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		for (int n = in.readInt(); n > 0; --n) {
+			put((String) in.readObject(), in.readObject());
+		}
+	}
 }
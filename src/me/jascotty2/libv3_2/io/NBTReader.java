@@ -0,0 +1,303 @@
+/**
+ * Copyright (C) 2014 Jacob Scott <jascottytechie@gmail.com>
+ * Description: Non-recursive NBT parser with hard limits on nesting depth,
+ * allocated bytes and element counts
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.jascotty2.libv3_2.io;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import me.jascotty2.libv3_2.io.NBT.Tag;
+
+public class NBTReader {
+
+	/**
+	 * default byte budget: 64MB of array and string payload
+	 */
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	/**
+	 * default element budget: total tags, list entries and array elements
+	 */
+	public static final long DEFAULT_MAX_ELEMENTS = 16L * 1024 * 1024;
+	protected final int maxDepth;
+	protected final long maxBytes;
+	protected final long maxElements;
+	// what has been used so far by the current read
+	protected long bytes, elements;
+
+	public NBTReader() {
+		this(NBT.MAX_DEPTH, DEFAULT_MAX_BYTES, DEFAULT_MAX_ELEMENTS);
+	}
+
+	/**
+	 * @param maxDepth how deep lists and compounds may be nested
+	 * @param maxBytes total payload bytes that may be allocated for arrays and
+	 * strings
+	 * @param maxElements total number of tags, list entries and array elements
+	 * that may be read
+	 */
+	public NBTReader(int maxDepth, long maxBytes, long maxElements) {
+		if (maxDepth < 0 || maxBytes < 0 || maxElements < 0) {
+			throw new IllegalArgumentException("NBT limits cannot be negative");
+		}
+		this.maxDepth = maxDepth;
+		this.maxBytes = maxBytes;
+		this.maxElements = maxElements;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public long getMaxElements() {
+		return maxElements;
+	}
+
+	/**
+	 * Read a root compound from the stream. <br />
+	 * Lists and compounds are tracked on an explicit stack rather than the
+	 * call stack, and every size read from the stream is checked against the
+	 * budget before anything is allocated for it.
+	 *
+	 * @param in stream to read from
+	 * @return the root compound (empty if the root is not a compound)
+	 * @throws IOException
+	 */
+	public synchronized NBTMap read(DataInput in) throws IOException {
+		bytes = elements = 0;
+		NBTMap root = new NBTMap();
+		try {
+			byte type = in.readByte();
+			// should be a map
+			if (type == Tag.COMPOUND.value) {
+				// throw out implied name..
+				root.setName(in.readUTF());
+				readCompound(in, root);
+			}
+		} catch (EOFException e) {
+		}
+		return root;
+	}
+
+	protected void readCompound(DataInput in, NBTMap root) throws IOException {
+		Frame[] frames = new Frame[Math.min(maxDepth, 32) + 1];
+		int top = 0;
+		frames[0] = new Frame(root);
+		while (top >= 0) {
+			final Frame f = frames[top];
+			final byte type;
+			String key = null;
+			if (f.map != null) {
+				if ((type = in.readByte()) == Tag.END.value) {
+					frames[top--] = null;
+					continue;
+				}
+				key = in.readUTF();
+				charge(utfBytes(key));
+			} else if (f.remaining == 0) {
+				frames[top--] = null;
+				continue;
+			} else {
+				--f.remaining;
+				type = f.type;
+			}
+			count(1);
+
+			final Object value;
+			Frame child = null;
+			if (type == Tag.LIST.value) {
+				final byte listType = in.readByte();
+				final int size = in.readInt();
+				if (size < 0) {
+					throw new RuntimeException("Tried to read NBT list with negative size " + size);
+				}
+				final Tag t = Tag.getTag(listType);
+				if (t == null && size > 0) {
+					throw new RuntimeException("Tried to read unknown NBT tag " + listType);
+				}
+				// fail before reading any of the entries
+				if (elements + size > maxElements) {
+					throw new RuntimeException("NBT list of " + size + " entries exceeds element budget of " + maxElements);
+				}
+				NBTList data = t == null || size == 0 ? new NBTList() : new NBTList(t.type);
+				value = data;
+				if (size > 0) {
+					child = new Frame(data, listType, size);
+				}
+			} else if (type == Tag.COMPOUND.value) {
+				NBTMap data = new NBTMap();
+				value = data;
+				child = new Frame(data);
+			} else {
+				value = readValue(in, type);
+			}
+
+			f.add(key, value);
+
+			if (child != null) {
+				if (top >= maxDepth) {
+					throw new RuntimeException("Tried to read NBT tag with too high complexity, depth > " + maxDepth);
+				} else if (++top == frames.length) {
+					Frame[] grown = new Frame[Math.min(maxDepth, frames.length * 2) + 1];
+					System.arraycopy(frames, 0, grown, 0, frames.length);
+					frames = grown;
+				}
+				frames[top] = child;
+			}
+		}
+	}
+
+	/**
+	 * Read a single non-container tag, checking sizes before allocating
+	 */
+	protected Object readValue(DataInput in, byte type) throws IOException {
+		if (type == Tag.BYTE.value) {
+			return in.readByte();
+		} else if (type == Tag.SHORT.value) {
+			return in.readShort();
+		} else if (type == Tag.INT.value) {
+			return in.readInt();
+		} else if (type == Tag.LONG.value) {
+			return in.readLong();
+		} else if (type == Tag.FLOAT.value) {
+			return in.readFloat();
+		} else if (type == Tag.DOUBLE.value) {
+			return in.readDouble();
+		} else if (type == Tag.STRING.value) {
+			final String s = in.readUTF();
+			charge(utfBytes(s));
+			return s;
+		} else if (type == Tag.LONG_STRING.value) {
+			final int size = in.readInt();
+			if (size < 0) {
+				throw new RuntimeException("Tried to read NBT string with negative size " + size);
+			}
+			// raw bytes plus the decoded chars
+			charge(size * 3L);
+			byte[] data = new byte[size];
+			in.readFully(data);
+			return new String(data);
+		} else if (in instanceof NBTBufferInput
+				&& (type == Tag.BYTE_ARRAY.value || type == Tag.INT_ARRAY.value || type == Tag.LONG_ARRAY.value)) {
+			// arrays stay as views of the source buffer
+			final int size = in.readInt();
+			if (size < 0) {
+				throw new RuntimeException("Tried to read NBT array with negative size " + size);
+			}
+			count(size);
+			final NBTBufferInput bin = (NBTBufferInput) in;
+			final int width = type == Tag.BYTE_ARRAY.value ? 1 : (type == Tag.INT_ARRAY.value ? 4 : 8);
+			if ((long) size * width > bin.remaining()) {
+				throw new EOFException();
+			} else if (width == 1) {
+				return bin.slice(size);
+			} else if (width == 4) {
+				return bin.slice(size * 4).asIntBuffer();
+			}
+			return bin.slice(size * 8).asLongBuffer();
+		} else if (type == Tag.BYTE_ARRAY.value) {
+			byte[] data = new byte[arraySize(in.readInt(), 1)];
+			in.readFully(data);
+			return data;
+		} else if (type == Tag.INT_ARRAY.value) {
+			final int size = arraySize(in.readInt(), 4);
+			int[] data = new int[size];
+			for (int i = 0; i < size; ++i) {
+				data[i] = in.readInt();
+			}
+			return data;
+		} else if (type == Tag.LONG_ARRAY.value) {
+			final int size = arraySize(in.readInt(), 8);
+			long[] data = new long[size];
+			for (int i = 0; i < size; ++i) {
+				data[i] = in.readLong();
+			}
+			return data;
+		}
+		throw new RuntimeException("Tried to read unknown NBT tag " + type);
+	}
+
+	/**
+	 * Validate an array length read from the stream and charge it against the
+	 * budget before the array is allocated
+	 *
+	 * @param size length as read
+	 * @param width bytes per element once loaded
+	 * @return size
+	 */
+	protected int arraySize(int size, int width) {
+		if (size < 0) {
+			throw new RuntimeException("Tried to read NBT array with negative size " + size);
+		}
+		count(size);
+		charge((long) size * width);
+		return size;
+	}
+
+	protected void count(long n) {
+		if ((elements += n) > maxElements) {
+			throw new RuntimeException("NBT data exceeds element budget of " + maxElements);
+		}
+	}
+
+	protected void charge(long n) {
+		if ((bytes += n) > maxBytes) {
+			throw new RuntimeException("NBT data exceeds byte budget of " + maxBytes);
+		}
+	}
+
+	static long utfBytes(String s) {
+		// close enough: java stores these as UTF-16
+		return (long) s.length() << 1;
+	}
+
+	/**
+	 * Open list or compound on the parse stack
+	 */
+	protected static final class Frame {
+
+		final NBTMap map;
+		final NBTList list;
+		final byte type;
+		int remaining;
+
+		Frame(NBTMap map) {
+			this.map = map;
+			this.list = null;
+			this.type = Tag.END.value;
+		}
+
+		Frame(NBTList list, byte type, int size) {
+			this.map = null;
+			this.list = list;
+			this.type = type;
+			this.remaining = size;
+		}
+
+		void add(String key, Object value) {
+			if (map != null) {
+				map.put(key, value);
+			} else {
+				list.add(value);
+			}
+		}
+	}
+}
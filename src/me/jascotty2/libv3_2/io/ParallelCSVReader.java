@@ -0,0 +1,215 @@
+/**
+ * Copyright (C) 2014 Jacob Scott <jascottytechie@gmail.com>
+ * Description: Reads large CSV files by parsing ranges of a mapped file in
+ * parallel
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.jascotty2.libv3_2.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The file is mapped and cut into ranges, each starting just after a line
+ * break. Each range is parsed on the fork-join pool on the guess that it
+ * starts a new row. <br />
+ * That guess is right unless the line break before it was inside a quoted
+ * field, which is only known once the range before has been checked, so the
+ * ranges are then checked in order: a range whose guess was wrong is parsed
+ * again, serially, continuing the row left open by the range before it. The
+ * rows are always the same as {@link CSVReader#readAll()} would give.
+ */
+public class ParallelCSVReader {
+
+	/**
+	 * files smaller than this are read serially
+	 */
+	public static final int MIN_PARALLEL_SIZE = 1024 * 1024;
+	/**
+	 * ranges are no smaller than this
+	 */
+	public static final int MIN_RANGE_SIZE = 64 * 1024;
+
+	/**
+	 * Read a UTF-8 csv file using the common fork-join pool
+	 *
+	 * @param file file to read
+	 * @return every row
+	 * @throws IOException
+	 */
+	public static List<String[]> readAll(File file) throws IOException {
+		return readAll(file, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Read a UTF-8 csv file
+	 *
+	 * @param file file to read
+	 * @param pool pool to parse on
+	 * @return every row
+	 * @throws IOException
+	 */
+	public static List<String[]> readAll(File file, ForkJoinPool pool) throws IOException {
+		final long size = file.length();
+		if (size < MIN_PARALLEL_SIZE || size > Integer.MAX_VALUE || pool.getParallelism() < 2) {
+			return FileIO.loadCSVFile(file);
+		}
+		final FileInputStream in = new FileInputStream(file);
+		try {
+			final FileChannel ch = in.getChannel();
+			final MappedByteBuffer data = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			return readAll(data, pool, Math.max(MIN_RANGE_SIZE, data.limit() / (pool.getParallelism() * 4)));
+		} finally {
+			in.close();
+		}
+	}
+
+	static List<String[]> readAll(ByteBuffer data, ForkJoinPool pool, int rangeSize) {
+		final char delim = sniffDelimiter(data);
+		final int[] starts = split(data, rangeSize);
+		final Range[] ranges = new Range[starts.length - 1];
+		for (int i = 0; i < ranges.length; ++i) {
+			ranges[i] = new Range(data, delim, starts[i], starts[i + 1]);
+		}
+		pool.invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				invokeAll(ranges);
+			}
+		});
+
+		int total = 0;
+		for (Range r : ranges) {
+			total += r.rows.size();
+		}
+		final List<String[]> ret = new ArrayList<String[]>(total);
+		// a parser with a row left open by the range before, if any
+		CSVReader open = null;
+		for (Range r : ranges) {
+			if (open == null) {
+				// the guess was right: this range did start a row
+				ret.addAll(r.rows);
+				open = r.parser.atRowStart() ? null : r.parser;
+			} else {
+				// started inside a quoted field: carry on from where the
+				// previous range left off
+				final CharBuffer text = r.decode();
+				open.feed(text.array(), text.arrayOffset() + text.position(), text.remaining(), ret);
+				if (open.atRowStart()) {
+					open = null;
+				}
+			}
+			r.rows = null;
+		}
+		if (open != null) {
+			// file did not end with a line break
+			open.finish(ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * Same result as the serial reader: look at the first
+	 * {@link CSVReader#SNIFF_LENGTH} characters
+	 */
+	static char sniffDelimiter(ByteBuffer data) {
+		final CharBuffer head = CharBuffer.allocate(CSVReader.SNIFF_LENGTH);
+		decoder().decode(data.duplicate(), head, true);
+		return CSVReader.sniffDelimiter(head.array(), 0, head.position(), head.position() == CSVReader.SNIFF_LENGTH);
+	}
+
+	/**
+	 * Range boundaries: 0, then the byte after the first line break at or
+	 * after each multiple of <code>step</code>, then the end
+	 */
+	static int[] split(ByteBuffer data, int step) {
+		final int size = data.limit();
+		final List<Integer> starts = new ArrayList<Integer>();
+		starts.add(0);
+		int pos = step;
+		while (pos < size) {
+			while (pos < size && data.get(pos) != '\n') {
+				++pos;
+			}
+			if (++pos >= size) {
+				break;
+			}
+			starts.add(pos);
+			pos += step;
+		}
+		starts.add(size);
+		final int[] ret = new int[starts.size()];
+		for (int i = 0; i < ret.length; ++i) {
+			ret[i] = starts.get(i);
+		}
+		return ret;
+	}
+
+	static CharsetDecoder decoder() {
+		// same replacement as InputStreamReader
+		return StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * One range of the file, parsed as though it started a row
+	 */
+	static final class Range extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		final ByteBuffer data;
+		final int start, end;
+		final CSVReader parser;
+		List<String[]> rows = new ArrayList<String[]>();
+
+		Range(ByteBuffer data, char delim, int start, int end) {
+			this.data = data;
+			this.start = start;
+			this.end = end;
+			parser = new CSVReader(delim);
+		}
+
+		CharBuffer decode() {
+			final ByteBuffer b = data.duplicate();
+			b.limit(end).position(start);
+			try {
+				// ranges start after a line break, so never split a character
+				return decoder().decode(b);
+			} catch (java.nio.charset.CharacterCodingException ex) {
+				// not thrown when replacing
+				throw new RuntimeException(ex);
+			}
+		}
+
+		@Override
+		protected void compute() {
+			final CharBuffer text = decode();
+			parser.feed(text.array(), text.arrayOffset() + text.position(), text.remaining(), rows);
+		}
+	}
+}
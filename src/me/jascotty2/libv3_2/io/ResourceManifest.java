@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2014 Jacob Scott <jascottytechie@gmail.com>
+ * Description: Record of the resources extracted into a folder, and the jar
+ * CRC of each
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package me.jascotty2.libv3_2.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kept as a {@link #FILE_NAME} file in the folder it describes, one
+ * "name&lt;tab&gt;crc" line per change: each change is appended, and the
+ * last line for a name wins. The file is rewritten without the old lines
+ * when it is read and has grown well past one line per file. <br />
+ * Used by {@link FileIO#extractResource} with
+ * {@link FileIO.OVERWRITE_CASE#IF_CHANGED}: a resource is only extracted
+ * again if the CRC of its jar entry is not the one recorded here.
+ */
+public class ResourceManifest {
+
+	public static final String FILE_NAME = ".resources";
+	/**
+	 * absolute folder path -&gt; its manifest, so each is only read once
+	 */
+	private static final HashMap<String, ResourceManifest> manifests = new HashMap<String, ResourceManifest>();
+	protected final File file;
+	protected final HashMap<String, Long> crcs = new HashMap<String, Long>();
+
+	/**
+	 * Get the manifest of a folder, reading it the first time
+	 *
+	 * @param folder folder the resources are extracted into
+	 * @return manifest, empty if the folder has none yet
+	 */
+	public static ResourceManifest forFolder(File folder) {
+		final String key = folder.getAbsolutePath();
+		synchronized (manifests) {
+			ResourceManifest m = manifests.get(key);
+			if (m == null) {
+				manifests.put(key, m = new ResourceManifest(new File(folder, FILE_NAME)));
+			}
+			return m;
+		}
+	}
+
+	protected ResourceManifest(File file) {
+		this.file = file;
+		try {
+			final List<String> lines = FileIO.loadFileUTF8(file);
+			for (String line : lines) {
+				final int tab = line.lastIndexOf('\t');
+				if (tab > 0) {
+					final String name = line.substring(0, tab);
+					try {
+						crcs.put(name, Long.parseLong(line.substring(tab + 1), 16));
+					} catch (NumberFormatException ex) {
+						// removed, or unreadable: extracted again next time
+						crcs.remove(name);
+					}
+				}
+			}
+			if (lines.size() > crcs.size() * 2 + 16) {
+				save();
+			}
+		} catch (IOException ex) {
+			// start again: everything is extracted once more
+		}
+	}
+
+	/**
+	 * @param name file name within the folder
+	 * @param crc CRC of the jar entry
+	 * @return true if the file was last extracted from an entry with this CRC
+	 */
+	public synchronized boolean isCurrent(String name, long crc) {
+		final Long known = crcs.get(name);
+		return known != null && known == crc;
+	}
+
+	/**
+	 * Record an extraction, adding it to the manifest file
+	 *
+	 * @param name file name within the folder
+	 * @param crc CRC of the jar entry it came from
+	 * @throws IOException
+	 */
+	public synchronized void put(String name, long crc) throws IOException {
+		final Long old = crcs.put(name, crc);
+		if (old == null || old != crc) {
+			FileIO.saveAppendFile(file, name + '\t' + Long.toHexString(crc) + '\n');
+		}
+	}
+
+	/**
+	 * Forget a file, so it is extracted the next time
+	 *
+	 * @param name file name within the folder
+	 * @throws IOException
+	 */
+	public synchronized void remove(String name) throws IOException {
+		if (crcs.remove(name) != null) {
+			FileIO.saveAppendFile(file, name + "\t-\n");
+		}
+	}
+
+	protected void save() throws IOException {
+		final StringBuilder s = new StringBuilder(crcs.size() * 32);
+		for (Map.Entry<String, Long> e : crcs.entrySet()) {
+			s.append(e.getKey()).append('\t').append(Long.toHexString(e.getValue())).append('\n');
+		}
+		FileIO.saveFileUTF8(file, s.toString());
+	}
+}